@@ -0,0 +1,541 @@
+package com.reactnative;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers transcripts of audio that has already been recognized, keyed by a
+ * spectral-peak fingerprint, so replayed media (voice notes, rewound videos,
+ * forwarded clips) can be captioned without another recognition round-trip.
+ *
+ * Each audio window is reduced to a constellation of per-band spectral peaks;
+ * pairs of nearby peaks are hashed into (f1, f2, dt) landmarks. A lookup is a
+ * match when enough landmarks agree on the same time offset into one stored
+ * entry. Entries live one-per-file in the cache directory and the least
+ * recently used ones are deleted once maxEntries is exceeded.
+ *
+ * Callers that capture audio incrementally fingerprint each WINDOW_SAMPLES
+ * window once, with fingerprint(window, windowIndex * FRAMES_PER_WINDOW), and
+ * reuse those landmarks both for lookups and for the final store. Lookups do
+ * not touch the statistics; callers report one recordHit or recordMiss per
+ * recognition session.
+ *
+ * Input is 16-bit little-endian mono PCM. Fingerprinting and disk access are
+ * not cheap, so keep this class off the main thread. All methods are
+ * synchronized.
+ */
+public class AudioFingerprintCache {
+    static final int SAMPLE_RATE = 16000;
+    static final int FRAME_SIZE = 1024;
+    static final int HOP_SIZE = 512;
+    // Fingerprinting window for incremental capture: 64 hops, about 2 s at 16 kHz
+    public static final int FRAMES_PER_WINDOW = 64;
+    public static final int WINDOW_SAMPLES = FRAMES_PER_WINDOW * HOP_SIZE;
+
+    // Frequency bands (FFT bin edges) in which one peak per frame is kept
+    private static final int[] BAND_EDGES = {4, 12, 24, 48, 96, 192, 384, FRAME_SIZE / 2};
+    // Peaks quieter than this (FFT magnitude, roughly a sine of amplitude 200) are treated as silence
+    private static final double MIN_PEAK_MAGNITUDE = 50.0 * FRAME_SIZE;
+    // Each anchor peak is paired with up to FAN_OUT later peaks within MAX_PAIR_FRAMES
+    private static final int FAN_OUT = 5;
+    private static final int MAX_PAIR_FRAMES = 63;
+    // Longer entries are thinned evenly across the clip, so late segments still match
+    private static final int MAX_HASHES_PER_ENTRY = 16000;
+
+    // A match needs this many offset-aligned landmarks, and this share of the query's landmarks
+    static final int MIN_MATCHING_HASHES = 12;
+    static final float MIN_MATCH_RATIO = 0.15f;
+
+    private static final int FILE_MAGIC = 0x56465043; // "VFPC"
+    private static final int FILE_VERSION = 1;
+    private static final String FILE_SUFFIX = ".fp";
+
+    /** A cached transcript returned for a confident match. */
+    public static final class Match {
+        public final int entryId;
+        public final String transcript;
+        public final long recognitionLatencyMs;
+        public final int matchingHashes;
+        // Position in the stored audio that lines up with frame 0 of the query (may be negative)
+        public final long offsetMs;
+        public final long durationMs;
+
+        Match(int entryId, String transcript, long recognitionLatencyMs, int matchingHashes,
+              long offsetMs, long durationMs) {
+            this.entryId = entryId;
+            this.transcript = transcript;
+            this.recognitionLatencyMs = recognitionLatencyMs;
+            this.matchingHashes = matchingHashes;
+            this.offsetMs = offsetMs;
+            this.durationMs = durationMs;
+        }
+
+        /**
+         * The words spoken from offsetMs on, so a segment replayed from the
+         * middle does not show text from the part that was skipped. Entries have
+         * no word timings; words are assumed to be spread evenly over the audio.
+         */
+        public String transcriptFromOffset() {
+            String[] words = transcript.trim().split("\\s+");
+            if (offsetMs <= 0 || durationMs <= 0 || words.length <= 1) {
+                return transcript;
+            }
+            int first = (int) Math.min(words.length - 1, words.length * offsetMs / durationMs);
+            return String.join(" ", Arrays.asList(words).subList(first, words.length));
+        }
+    }
+
+    public static final class Stats {
+        public final int hits;
+        public final int misses;
+        public final int entries;
+        public final long latencySavedMs;
+
+        Stats(int hits, int misses, int entries, long latencySavedMs) {
+            this.hits = hits;
+            this.misses = misses;
+            this.entries = entries;
+            this.latencySavedMs = latencySavedMs;
+        }
+
+        public float hitRate() {
+            int lookups = hits + misses;
+            return lookups == 0 ? 0f : (float) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US, "hits=%d misses=%d hitRate=%.2f entries=%d latencySavedMs=%d",
+                    hits, misses, hitRate(), entries, latencySavedMs);
+        }
+    }
+
+    private static final class Entry {
+        final int id;
+        final String transcript;
+        final long recognitionLatencyMs;
+        final long[] landmarks;
+        final int frames;
+
+        Entry(int id, String transcript, long recognitionLatencyMs, long[] landmarks) {
+            this.id = id;
+            this.transcript = transcript;
+            this.recognitionLatencyMs = recognitionLatencyMs;
+            this.landmarks = landmarks;
+            int lastFrame = -1;
+            for (long landmark : landmarks) {
+                lastFrame = Math.max(lastFrame, (int) landmark);
+            }
+            this.frames = lastFrame + 1;
+        }
+    }
+
+    /** The best (entry, time offset) pair found by bestMatch. */
+    private static final class Alignment {
+        final int entryId;
+        final int offsetFrames;
+        final int votes;
+
+        Alignment(int entryId, int offsetFrames, int votes) {
+            this.entryId = entryId;
+            this.offsetFrames = offsetFrames;
+            this.votes = votes;
+        }
+    }
+
+    private final File directory;
+    private final int maxEntries;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Landmark hash -> packed (entry id, anchor frame) postings
+    private final Map<Integer, List<Long>> index = new HashMap<>();
+    private int nextId = 0;
+
+    private int hits = 0;
+    private int misses = 0;
+    private long latencySavedMs = 0;
+
+    public AudioFingerprintCache(File directory, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        load();
+    }
+
+    /** Returns the cached transcript if this audio confidently matches a stored entry, otherwise null. */
+    public synchronized Match lookup(short[] samples) {
+        return lookup(fingerprint(samples, 0));
+    }
+
+    /** Same as lookup(short[]), for landmarks already computed with fingerprint(). */
+    public synchronized Match lookup(long[] query) {
+        Alignment best = bestMatch(query);
+        if (!isConfident(best, query.length)) {
+            return null;
+        }
+
+        Entry entry = entries.get(best.entryId);
+        // File timestamps carry the LRU order across restarts
+        entryFile(entry.id).setLastModified(System.currentTimeMillis());
+        return new Match(entry.id, entry.transcript, entry.recognitionLatencyMs, best.votes,
+                framesToMs(best.offsetFrames), framesToMs(entry.frames));
+    }
+
+    /**
+     * Stores the transcript recognized for this audio. Audio that already
+     * matches an entry, or is too quiet to fingerprint, is not stored again.
+     */
+    public synchronized void store(short[] samples, String transcript, long recognitionLatencyMs) {
+        store(fingerprint(samples, 0), transcript, recognitionLatencyMs);
+    }
+
+    /** Same as store(short[], ...), for landmarks already computed with fingerprint(). */
+    public synchronized void store(long[] landmarks, String transcript, long recognitionLatencyMs) {
+        if (transcript == null || transcript.isEmpty()) {
+            return;
+        }
+
+        landmarks = thin(landmarks, MAX_HASHES_PER_ENTRY);
+        if (landmarks.length < MIN_MATCHING_HASHES) {
+            return;
+        }
+        Alignment best = bestMatch(landmarks);
+        if (isConfident(best, landmarks.length)) {
+            // Already cached; just mark it as recently used
+            Entry existing = entries.get(best.entryId);
+            entryFile(existing.id).setLastModified(System.currentTimeMillis());
+            return;
+        }
+
+        Entry entry = new Entry(nextId++, transcript, recognitionLatencyMs, landmarks);
+        try {
+            write(entry);
+        } catch (IOException e) {
+            // The cache is an optimization; recognition still works without it
+            entryFile(entry.id).delete();
+            return;
+        }
+        add(entry);
+        evictOverflow();
+    }
+
+    /**
+     * Records a session captioned from the cache. Only the part of the
+     * original recognition latency still ahead when the caption was served
+     * counts as saved.
+     */
+    public synchronized void recordHit(Match match, long servedAfterMs) {
+        hits++;
+        latencySavedMs += Math.max(0, match.recognitionLatencyMs - servedAfterMs);
+    }
+
+    /** Records a session that was looked up but had to be recognized. */
+    public synchronized void recordMiss() {
+        misses++;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, entries.size(), latencySavedMs);
+    }
+
+    /** Converts 16-bit little-endian PCM bytes, as delivered by RecognitionListener.onBufferReceived. */
+    public static short[] toSamples(byte[] pcm, int length) {
+        short[] samples = new short[length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((pcm[2 * i] & 0xff) | (pcm[2 * i + 1] << 8));
+        }
+        return samples;
+    }
+
+    /**
+     * Computes the landmarks of an audio window. Each landmark packs the
+     * (f1, f2, dt) hash in the high 32 bits and the anchor frame, counted
+     * from firstFrame, in the low 32.
+     */
+    public static long[] fingerprint(short[] samples, int firstFrame) {
+        int frames = samples.length < FRAME_SIZE ? 0 : 1 + (samples.length - FRAME_SIZE) / HOP_SIZE;
+        int bands = BAND_EDGES.length - 1;
+
+        // Constellation: for every frame, the strongest bin in each band (or -1)
+        int[][] peaks = new int[frames][bands];
+        double[] window = hannWindow();
+        double[] re = new double[FRAME_SIZE];
+        double[] im = new double[FRAME_SIZE];
+        double[] bandPeak = new double[bands];
+
+        for (int frame = 0; frame < frames; frame++) {
+            int start = frame * HOP_SIZE;
+            for (int i = 0; i < FRAME_SIZE; i++) {
+                re[i] = samples[start + i] * window[i];
+                im[i] = 0;
+            }
+            fft(re, im);
+
+            double bandPeakSum = 0;
+            for (int band = 0; band < bands; band++) {
+                int bestBin = -1;
+                double bestMagnitude = 0;
+                for (int bin = BAND_EDGES[band]; bin < BAND_EDGES[band + 1]; bin++) {
+                    double magnitude = Math.hypot(re[bin], im[bin]);
+                    if (magnitude > bestMagnitude) {
+                        bestMagnitude = magnitude;
+                        bestBin = bin;
+                    }
+                }
+                peaks[frame][band] = bestBin;
+                bandPeak[band] = bestMagnitude;
+                bandPeakSum += bestMagnitude;
+            }
+
+            // Keep only peaks that stand out from the frame's other bands
+            double threshold = Math.max(MIN_PEAK_MAGNITUDE, bandPeakSum / bands);
+            for (int band = 0; band < bands; band++) {
+                if (bandPeak[band] < threshold) {
+                    peaks[frame][band] = -1;
+                }
+            }
+        }
+
+        List<Long> landmarks = new ArrayList<>();
+        for (int frame = 0; frame < frames; frame++) {
+            for (int band = 0; band < bands; band++) {
+                int anchorBin = peaks[frame][band];
+                if (anchorBin < 0) {
+                    continue;
+                }
+
+                int paired = 0;
+                for (int target = frame + 1; target < frames && target - frame <= MAX_PAIR_FRAMES && paired < FAN_OUT; target++) {
+                    for (int targetBand = 0; targetBand < bands && paired < FAN_OUT; targetBand++) {
+                        int targetBin = peaks[target][targetBand];
+                        if (targetBin < 0) {
+                            continue;
+                        }
+                        int hash = (anchorBin << 15) | (targetBin << 6) | (target - frame);
+                        landmarks.add(((long) hash << 32) | (firstFrame + frame));
+                        paired++;
+                    }
+                }
+            }
+        }
+
+        long[] result = new long[landmarks.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = landmarks.get(i);
+        }
+        return result;
+    }
+
+    /** Keeps at most max landmarks, dropping them evenly across the whole clip. */
+    private static long[] thin(long[] landmarks, int max) {
+        if (landmarks.length <= max) {
+            return landmarks;
+        }
+        long[] kept = new long[max];
+        for (int i = 0; i < max; i++) {
+            kept[i] = landmarks[(int) ((long) i * landmarks.length / max)];
+        }
+        return kept;
+    }
+
+    /** Votes for (entry, time offset) pairs and returns the winner, or null when nothing matched at all. */
+    private Alignment bestMatch(long[] query) {
+        Map<Long, Integer> votes = new HashMap<>();
+        Alignment best = null;
+        int bestVotes = 0;
+
+        for (long landmark : query) {
+            List<Long> postings = index.get((int) (landmark >>> 32));
+            if (postings == null) {
+                continue;
+            }
+            int queryFrame = (int) landmark;
+            for (long posting : postings) {
+                int entryId = (int) (posting >>> 32);
+                int offset = (int) posting - queryFrame;
+                long key = ((long) entryId << 32) | (offset & 0xffffffffL);
+                Integer count = votes.get(key);
+                int updated = count == null ? 1 : count + 1;
+                votes.put(key, updated);
+                if (updated > bestVotes) {
+                    bestVotes = updated;
+                    best = new Alignment(entryId, offset, updated);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static boolean isConfident(Alignment alignment, int queryLength) {
+        return alignment != null
+                && alignment.votes >= MIN_MATCHING_HASHES
+                && alignment.votes >= MIN_MATCH_RATIO * queryLength;
+    }
+
+    private static long framesToMs(int frames) {
+        return frames * (long) HOP_SIZE * 1000 / SAMPLE_RATE;
+    }
+
+    private void add(Entry entry) {
+        entries.put(entry.id, entry);
+        for (long landmark : entry.landmarks) {
+            int hash = (int) (landmark >>> 32);
+            List<Long> postings = index.get(hash);
+            if (postings == null) {
+                postings = new ArrayList<>(2);
+                index.put(hash, postings);
+            }
+            postings.add(((long) entry.id << 32) | (landmark & 0xffffffffL));
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (long landmark : entry.landmarks) {
+            int hash = (int) (landmark >>> 32);
+            List<Long> postings = index.get(hash);
+            if (postings == null) {
+                continue;
+            }
+            postings.remove(Long.valueOf(((long) entry.id << 32) | (landmark & 0xffffffffL)));
+            if (postings.isEmpty()) {
+                index.remove(hash);
+            }
+        }
+    }
+
+    private void load() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        // Oldest first, so the access-ordered map ends up in LRU order
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+
+        for (File file : files) {
+            try {
+                Entry entry = read(file);
+                add(entry);
+                nextId = Math.max(nextId, entry.id + 1);
+            } catch (IOException | NumberFormatException e) {
+                file.delete();
+            }
+        }
+        evictOverflow();
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            unindex(evicted);
+            entryFile(evicted.id).delete();
+        }
+    }
+
+    private File entryFile(int id) {
+        return new File(directory, id + FILE_SUFFIX);
+    }
+
+    private void write(Entry entry) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(entryFile(entry.id))))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(entry.transcript);
+            out.writeLong(entry.recognitionLatencyMs);
+            out.writeInt(entry.landmarks.length);
+            for (long landmark : entry.landmarks) {
+                out.writeLong(landmark);
+            }
+        }
+    }
+
+    private static Entry read(File file) throws IOException {
+        String name = file.getName();
+        int id = Integer.parseInt(name.substring(0, name.length() - FILE_SUFFIX.length()));
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("Unrecognized fingerprint file: " + name);
+            }
+            String transcript = in.readUTF();
+            long latencyMs = in.readLong();
+            int count = in.readInt();
+            if (count < 0 || count > MAX_HASHES_PER_ENTRY) {
+                throw new IOException("Corrupt fingerprint file: " + name);
+            }
+            long[] landmarks = new long[count];
+            for (int i = 0; i < count; i++) {
+                landmarks[i] = in.readLong();
+            }
+            return new Entry(id, transcript, latencyMs, landmarks);
+        }
+    }
+
+    private static double[] hannWindow() {
+        double[] window = new double[FRAME_SIZE];
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FRAME_SIZE - 1));
+        }
+        return window;
+    }
+
+    /** In-place iterative radix-2 FFT; length must be a power of two. */
+    private static void fft(double[] re, double[] im) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            double angle = -2 * Math.PI / len;
+            double wRe = Math.cos(angle);
+            double wIm = Math.sin(angle);
+            for (int i = 0; i < n; i += len) {
+                double curRe = 1;
+                double curIm = 0;
+                for (int k = 0; k < len / 2; k++) {
+                    int a = i + k;
+                    int b = a + len / 2;
+                    double vRe = re[b] * curRe - im[b] * curIm;
+                    double vIm = re[b] * curIm + im[b] * curRe;
+                    re[b] = re[a] - vRe;
+                    im[b] = im[a] - vIm;
+                    re[a] += vRe;
+                    im[a] += vIm;
+                    double nextRe = curRe * wRe - curIm * wIm;
+                    curIm = curRe * wIm + curIm * wRe;
+                    curRe = nextRe;
+                }
+            }
+        }
+    }
+}
@@ -1,24 +1,43 @@
 package com.reactnative;
 
+import android.content.Context;
 import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.Network;
 import android.net.Uri;
 import android.os.Build;
 import android.provider.Settings;
+import android.util.Base64;
 import android.util.Log;
 import android.widget.Toast;
 import android.Manifest;
 import android.content.pm.PackageManager;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class FloatingCaptionModule extends ReactContextBaseJavaModule {
     private static final String TAG = "FloatingCaptionModule";
     private static final String MODULE_NAME = "FloatingCaptionModule";
+    private static final String SPOOL_TRANSCRIPT_EVENT = "onSpoolTranscript";
     private final ReactApplicationContext reactContext;
 
+    // Offline transcription spool, drained whenever a network becomes available. Static so
+    // FloatingCaptionService can hand it audio the recognizer lost to network errors.
+    private static volatile TranscriptionSpool spool;
+    private ConnectivityManager.NetworkCallback networkCallback;
+    private final ExecutorService spoolDrainer = Executors.newSingleThreadExecutor();
+
     public FloatingCaptionModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
@@ -119,4 +138,157 @@ public class FloatingCaptionModule extends ReactContextBaseJavaModule {
         intent.putExtra("caption_text", text);
         reactContext.sendBroadcast(intent);
     }
+
+    @ReactMethod
+    public void startSpool(String baseUrl, String languageCode, Promise promise) {
+        try {
+            if (spool == null) {
+                spool = new TranscriptionSpool(new File(reactContext.getFilesDir(), "transcription_spool"),
+                        new HttpChunkUploader(baseUrl, languageCode), this::emitSpoolTranscript);
+                registerNetworkCallback();
+                Log.d(TAG, "Transcription spool started: " + spool.getStats());
+            }
+            promise.resolve(true);
+        } catch (IOException e) {
+            Log.e(TAG, "Error starting spool: " + e.getMessage(), e);
+            promise.reject("SPOOL_ERROR", e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void appendSpoolAudio(String base64Pcm) {
+        if (spool == null) {
+            Log.w(TAG, "appendSpoolAudio called before startSpool");
+            return;
+        }
+        try {
+            byte[] pcm = Base64.decode(base64Pcm, Base64.DEFAULT);
+            spool.append(pcm, 0, pcm.length);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Error spooling audio: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Queues one recognition session's PCM that could not be transcribed
+     * online. Returns false when no spool has been started from JS.
+     */
+    static boolean spoolOfflineAudio(byte[] pcm) {
+        TranscriptionSpool current = spool;
+        if (current == null) {
+            return false;
+        }
+        try {
+            current.append(pcm, 0, pcm.length);
+            // Each session becomes its own chunk, so its transcript arrives as one segment
+            current.flush();
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error spooling session audio: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    @ReactMethod
+    public void drainSpool(Promise promise) {
+        if (spool == null) {
+            promise.reject("SPOOL_NOT_STARTED", "Call startSpool first");
+            return;
+        }
+        spoolDrainer.execute(() -> {
+            try {
+                spool.flush();
+                spool.drain();
+                promise.resolve(spoolStatsMap());
+            } catch (IOException | InterruptedException e) {
+                promise.reject("SPOOL_ERROR", e.getMessage());
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getSpoolStats(Promise promise) {
+        if (spool == null) {
+            promise.reject("SPOOL_NOT_STARTED", "Call startSpool first");
+            return;
+        }
+        promise.resolve(spoolStatsMap());
+    }
+
+    // Required by NativeEventEmitter
+    @ReactMethod
+    public void addListener(String eventName) {
+    }
+
+    @ReactMethod
+    public void removeListeners(double count) {
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        if (networkCallback != null) {
+            ConnectivityManager connectivityManager =
+                    (ConnectivityManager) reactContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+            if (connectivityManager != null) {
+                connectivityManager.unregisterNetworkCallback(networkCallback);
+            }
+            networkCallback = null;
+        }
+        spoolDrainer.shutdownNow();
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing spool: " + e.getMessage());
+            }
+            spool = null;
+        }
+    }
+
+    private void registerNetworkCallback() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) reactContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return;
+        }
+        networkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                Log.d(TAG, "Network available - draining transcription spool");
+                spoolDrainer.execute(() -> {
+                    try {
+                        spool.drain();
+                        Log.d(TAG, "Spool drained: " + spool.getStats());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+        };
+        connectivityManager.registerDefaultNetworkCallback(networkCallback);
+    }
+
+    private void emitSpoolTranscript(long sequence, String transcript) {
+        WritableMap event = Arguments.createMap();
+        event.putDouble("sequence", sequence);
+        event.putString("transcript", transcript);
+        reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(SPOOL_TRANSCRIPT_EVENT, event);
+    }
+
+    private WritableMap spoolStatsMap() {
+        TranscriptionSpool.Stats stats = spool.getStats();
+        WritableMap map = Arguments.createMap();
+        map.putInt("queueDepth", stats.queueDepth);
+        map.putInt("uploaded", stats.uploaded);
+        map.putInt("retries", stats.retries);
+        map.putInt("failed", stats.failed);
+        map.putInt("rejected", stats.rejected);
+        map.putDouble("drainRatePerSecond", stats.drainRatePerSecond);
+        map.putDouble("averageBacklogLatencyMs", stats.averageBacklogLatencyMs);
+        map.putDouble("maxBacklogLatencyMs", stats.maxBacklogLatencyMs);
+        return map;
+    }
 }
@@ -12,7 +12,10 @@ import android.content.IntentFilter;
 import android.graphics.PixelFormat;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.speech.RecognitionListener;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
@@ -26,15 +29,36 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.app.NotificationCompat;
 import com.mobileapp.MainActivity;
 import com.mobileapp.R;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class FloatingCaptionService extends Service {
     private static final String TAG = "FloatingCaptionService";
     private static final String CHANNEL_ID = "FloatingCaptionChannel";
     private static final int NOTIFICATION_ID = 1;
+
+    // How long the recognizer stays idle before listening again
+    static final long RESTART_DELAY_AFTER_ERROR_MS = 1000;
+    static final long RESTART_DELAY_AFTER_RESULTS_MS = 3000;
+
+    // Recognizer buffers are 16 kHz, 16-bit mono PCM; each ~2 s window is fingerprinted once
+    private static final int FINGERPRINT_WINDOW_BYTES = 2 * AudioFingerprintCache.WINDOW_SAMPLES;
+    // About 30 s of audio per session
+    private static final int MAX_SESSION_WINDOWS = 15;
+    private static final int MAX_SESSION_AUDIO_BYTES = MAX_SESSION_WINDOWS * FINGERPRINT_WINDOW_BYTES;
+    private static final int FINGERPRINT_CACHE_MAX_ENTRIES = 200;
+    // Matches whose audio started within this of the served replay's start belong to that replay
+    private static final long REPLAY_ORIGIN_TOLERANCE_MS = 1000;
     
     private WindowManager windowManager;
     private View floatingView;
@@ -43,6 +67,30 @@ public class FloatingCaptionService extends Service {
     private boolean isCaptioning = false;
     private SpeechRecognizer speechRecognizer;
     private Intent speechRecognizerIntent;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Audio of the current recognition session is fingerprinted to reuse earlier transcripts.
+    // Fingerprinting, cache and spool disk I/O run on fingerprintExecutor, never on the main thread.
+    private final ExecutorService fingerprintExecutor = Executors.newSingleThreadExecutor();
+    private volatile AudioFingerprintCache fingerprintCache;
+    private final ByteArrayOutputStream windowAudio = new ByteArrayOutputStream();
+    // Everything captured this session, handed to the offline spool if the network fails
+    private final ByteArrayOutputStream sessionAudio = new ByteArrayOutputStream();
+    private FingerprintSession fingerprintSession;
+    // The replay last captioned from the cache: its entry and when its audio started playing
+    private int servedReplayEntryId = -1;
+    private long servedReplayOriginMs;
+
+    /** Fingerprint state of one recognition session; landmarks are only touched on fingerprintExecutor. */
+    private static final class FingerprintSession {
+        final long startMs = SystemClock.elapsedRealtime();
+        final List<long[]> landmarks = new ArrayList<>();
+        int windows;
+        boolean lookedUp;
+        // Set once a cached caption was shown; the recognizer's own callbacks are then ignored
+        volatile boolean served;
+    }
     
     private BroadcastReceiver captionUpdateReceiver = new BroadcastReceiver() {
         @Override
@@ -138,6 +186,10 @@ public class FloatingCaptionService extends Service {
             captionParams.gravity = Gravity.BOTTOM;
             captionParams.y = 100;
 
+            final File fingerprintDir = new File(getCacheDir(), "caption_fingerprints");
+            fingerprintExecutor.execute(() ->
+                    fingerprintCache = new AudioFingerprintCache(fingerprintDir, FINGERPRINT_CACHE_MAX_ENTRIES));
+
             // Set up speech recognizer
             setupSpeechRecognizer();
             
@@ -198,7 +250,8 @@ public class FloatingCaptionService extends Service {
         }
     }
 
-    private void toggleCaptioning() {
+    @VisibleForTesting
+    void toggleCaptioning() {
         if (isCaptioning) {
             stopCaptioning();
         } else {
@@ -283,9 +336,45 @@ public class FloatingCaptionService extends Service {
         }
     }
 
+    /**
+     * Creates the recognizer used for captioning, or returns null when speech
+     * recognition is not available on this device. Tests override this to
+     * substitute a recognizer they can drive directly.
+     */
+    @VisibleForTesting
+    @Nullable
+    SpeechRecognizer createSpeechRecognizer() {
+        if (!SpeechRecognizer.isRecognitionAvailable(this)) {
+            return null;
+        }
+        return SpeechRecognizer.createSpeechRecognizer(this);
+    }
+
+    @VisibleForTesting
+    @Nullable
+    TextView getCaptionText() {
+        return captionText;
+    }
+
+    @VisibleForTesting
+    @Nullable
+    AudioFingerprintCache getFingerprintCache() {
+        return fingerprintCache;
+    }
+
+    /** Blocks until fingerprinting and cache I/O queued so far have finished. */
+    @VisibleForTesting
+    void awaitFingerprinting() throws InterruptedException {
+        try {
+            fingerprintExecutor.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
     private void setupSpeechRecognizer() {
-        if (SpeechRecognizer.isRecognitionAvailable(this)) {
-            speechRecognizer = SpeechRecognizer.createSpeechRecognizer(this);
+        speechRecognizer = createSpeechRecognizer();
+        if (speechRecognizer != null) {
             speechRecognizerIntent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
             speechRecognizerIntent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
             speechRecognizerIntent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, "en-US");
@@ -296,11 +385,15 @@ public class FloatingCaptionService extends Service {
                 @Override
                 public void onReadyForSpeech(Bundle params) {
                     Log.d(TAG, "Ready for speech");
+                    startFingerprintSession();
                     updateCaption("🎤 Listening...");
                 }
 
                 @Override
                 public void onBeginningOfSpeech() {
+                    if (isServedFromCache()) {
+                        return;
+                    }
                     Log.d(TAG, "Beginning of speech");
                     updateCaption("🗣️ Speaking...");
                 }
@@ -312,58 +405,69 @@ public class FloatingCaptionService extends Service {
 
                 @Override
                 public void onBufferReceived(byte[] buffer) {
-                    // Audio buffer received
+                    // Audio buffer received - replayed media may already have a cached transcript
+                    onSessionAudio(buffer);
                 }
 
                 @Override
                 public void onEndOfSpeech() {
+                    if (isServedFromCache()) {
+                        return;
+                    }
                     Log.d(TAG, "End of speech");
                     updateCaption("🔄 Processing...");
                 }
 
                 @Override
                 public void onError(int error) {
+                    if (isServedFromCache()) {
+                        // Expected after cancelling a session answered from the cache
+                        Log.d(TAG, "Ignoring error " + error + " from cached session");
+                        return;
+                    }
                     Log.e(TAG, "Speech recognition error: " + error);
                     String errorMessage = getErrorMessage(error);
                     updateCaption("❌ " + errorMessage);
+                    if (error == SpeechRecognizer.ERROR_NETWORK || error == SpeechRecognizer.ERROR_NETWORK_TIMEOUT) {
+                        spoolSessionAudio();
+                    }
+                    finishFingerprintSession(null);
                     
                     // Only restart if it's not a client error or insufficient permissions
                     if (isCaptioning && speechRecognizer != null && error != SpeechRecognizer.ERROR_CLIENT) {
                         // Add a small delay before restarting
-                        new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(() -> {
-                            if (isCaptioning && speechRecognizer != null) {
-                                Log.d(TAG, "Restarting speech recognition after error");
-                                speechRecognizer.startListening(speechRecognizerIntent);
-                            }
-                        }, 1000);
+                        restartListeningAfter(RESTART_DELAY_AFTER_ERROR_MS, "error");
                     }
                 }
 
                 @Override
                 public void onResults(Bundle results) {
+                    if (isServedFromCache()) {
+                        return;
+                    }
                     ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
                     if (matches != null && !matches.isEmpty()) {
                         String recognizedText = matches.get(0);
                         Log.d(TAG, "Recognized: " + recognizedText);
                         updateCaption("💬 " + recognizedText);
+                        finishFingerprintSession(recognizedText);
                         
                         // Show the result for 3 seconds before restarting
-                        new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(() -> {
-                            if (isCaptioning && speechRecognizer != null) {
-                                Log.d(TAG, "Restarting speech recognition after results");
-                                speechRecognizer.startListening(speechRecognizerIntent);
-                            }
-                        }, 3000);
+                        restartListeningAfter(RESTART_DELAY_AFTER_RESULTS_MS, "results");
                     } else {
+                        finishFingerprintSession(null);
                         // No results, restart immediately
                         if (isCaptioning && speechRecognizer != null) {
-                            speechRecognizer.startListening(speechRecognizerIntent);
+                            startListening();
                         }
                     }
                 }
 
                 @Override
                 public void onPartialResults(Bundle partialResults) {
+                    if (isServedFromCache()) {
+                        return;
+                    }
                     ArrayList<String> matches = partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
                     if (matches != null && !matches.isEmpty()) {
                         String partialText = matches.get(0);
@@ -383,11 +487,168 @@ public class FloatingCaptionService extends Service {
         }
     }
 
+    private void restartListeningAfter(long delayMs, String reason) {
+        mainHandler.postDelayed(() -> {
+            if (isCaptioning && speechRecognizer != null) {
+                Log.d(TAG, "Restarting speech recognition after " + reason);
+                startListening();
+            }
+        }, delayMs);
+    }
+
+    /** Starts a new recognition session; callbacks from here on no longer belong to the previous one. */
+    private void startListening() {
+        clearFingerprintSession();
+        speechRecognizer.startListening(speechRecognizerIntent);
+    }
+
+    private void clearFingerprintSession() {
+        fingerprintSession = null;
+        windowAudio.reset();
+        sessionAudio.reset();
+    }
+
+    private boolean isServedFromCache() {
+        return fingerprintSession != null && fingerprintSession.served;
+    }
+
+    private void startFingerprintSession() {
+        windowAudio.reset();
+        sessionAudio.reset();
+        fingerprintSession = new FingerprintSession();
+    }
+
+    private void onSessionAudio(byte[] buffer) {
+        final FingerprintSession session = fingerprintSession;
+        if (session == null || buffer == null) {
+            return;
+        }
+        int room = MAX_SESSION_AUDIO_BYTES - sessionAudio.size();
+        if (room > 0) {
+            sessionAudio.write(buffer, 0, Math.min(buffer.length, room));
+        }
+        if (session.served || session.windows >= MAX_SESSION_WINDOWS) {
+            return;
+        }
+
+        windowAudio.write(buffer, 0, buffer.length);
+        while (windowAudio.size() >= FINGERPRINT_WINDOW_BYTES && session.windows < MAX_SESSION_WINDOWS) {
+            byte[] pending = windowAudio.toByteArray();
+            final byte[] window = Arrays.copyOf(pending, FINGERPRINT_WINDOW_BYTES);
+            windowAudio.reset();
+            windowAudio.write(pending, FINGERPRINT_WINDOW_BYTES, pending.length - FINGERPRINT_WINDOW_BYTES);
+
+            final int firstFrame = session.windows++ * AudioFingerprintCache.FRAMES_PER_WINDOW;
+            fingerprintExecutor.execute(() -> fingerprintWindow(session, window, firstFrame));
+        }
+    }
+
+    // Runs on fingerprintExecutor
+    private void fingerprintWindow(FingerprintSession session, byte[] window, int firstFrame) {
+        long[] landmarks = AudioFingerprintCache.fingerprint(
+                AudioFingerprintCache.toSamples(window, window.length), firstFrame);
+        session.landmarks.add(landmarks);
+
+        AudioFingerprintCache cache = fingerprintCache;
+        if (cache == null || session.served) {
+            return;
+        }
+        session.lookedUp = true;
+        final AudioFingerprintCache.Match match = cache.lookup(landmarks);
+        if (match != null) {
+            mainHandler.post(() -> serveCachedCaption(session, match));
+        }
+    }
+
+    private void serveCachedCaption(FingerprintSession session, AudioFingerprintCache.Match match) {
+        if (session != fingerprintSession || session.served || !isCaptioning || speechRecognizer == null) {
+            return;
+        }
+        session.served = true;
+        final long servedAfterMs = SystemClock.elapsedRealtime() - session.startMs;
+
+        // The caption is already known, so stop recognizing this session
+        speechRecognizer.cancel();
+
+        long originMs = session.startMs - match.offsetMs;
+        if (match.entryId == servedReplayEntryId
+                && Math.abs(originMs - servedReplayOriginMs) <= REPLAY_ORIGIN_TOLERANCE_MS) {
+            // Later part of a replay that is already captioned: neither shown nor counted again
+            Log.d(TAG, "Fingerprint cache: replay of entry " + match.entryId + " still playing");
+        } else {
+            servedReplayEntryId = match.entryId;
+            servedReplayOriginMs = originMs;
+            Log.d(TAG, "Fingerprint cache hit (" + match.matchingHashes + " landmarks) after " + servedAfterMs + "ms");
+            updateCaption("💬 " + match.transcriptFromOffset());
+            fingerprintExecutor.execute(() -> {
+                fingerprintCache.recordHit(match, servedAfterMs);
+                Log.d(TAG, "Fingerprint cache: " + fingerprintCache.getStats());
+            });
+        }
+
+        restartListeningAfter(RESTART_DELAY_AFTER_RESULTS_MS, "cached caption");
+    }
+
+    /** Hands the session's audio, which the recognizer could not reach the network for, to the offline spool. */
+    private void spoolSessionAudio() {
+        if (sessionAudio.size() == 0) {
+            return;
+        }
+        final byte[] pcm = sessionAudio.toByteArray();
+        sessionAudio.reset();
+        fingerprintExecutor.execute(() -> {
+            if (FloatingCaptionModule.spoolOfflineAudio(pcm)) {
+                Log.d(TAG, "Spooled " + pcm.length + " bytes of audio for offline transcription");
+            } else {
+                Log.w(TAG, "Offline spool not started; audio lost to network error is dropped");
+            }
+        });
+    }
+
+    /** Ends a session the recognizer answered; transcript is null when nothing was recognized. */
+    private void finishFingerprintSession(@Nullable String transcript) {
+        final FingerprintSession session = fingerprintSession;
+        fingerprintSession = null;
+        windowAudio.reset();
+        if (session == null || session.served) {
+            return;
+        }
+
+        final long latencyMs = SystemClock.elapsedRealtime() - session.startMs;
+        // Queued behind this session's window tasks, so all its landmarks are in
+        fingerprintExecutor.execute(() -> {
+            AudioFingerprintCache cache = fingerprintCache;
+            if (cache == null) {
+                return;
+            }
+            if (session.lookedUp) {
+                cache.recordMiss();
+            }
+            if (transcript != null && !session.landmarks.isEmpty()) {
+                cache.store(joinLandmarks(session.landmarks), transcript, latencyMs);
+            }
+        });
+    }
+
+    private static long[] joinLandmarks(List<long[]> windows) {
+        int count = 0;
+        for (long[] window : windows) {
+            count += window.length;
+        }
+        long[] joined = new long[count];
+        int offset = 0;
+        for (long[] window : windows) {
+            System.arraycopy(window, 0, joined, offset, window.length);
+            offset += window.length;
+        }
+        return joined;
+    }
+
     private void startSpeechRecognition() {
         if (speechRecognizer != null && speechRecognizerIntent != null) {
             Log.d(TAG, "Starting speech recognition");
             updateCaption("🎤 Starting microphone...");
-            speechRecognizer.startListening(speechRecognizerIntent);
+            startListening();
         }
     }
 
@@ -396,6 +657,7 @@ public class FloatingCaptionService extends Service {
             Log.d(TAG, "Stopping speech recognition");
             speechRecognizer.stopListening();
             speechRecognizer.cancel();
+            clearFingerprintSession();
             updateCaption("🔇 Microphone stopped");
         }
     }
@@ -429,6 +691,13 @@ public class FloatingCaptionService extends Service {
     public void onDestroy() {
         super.onDestroy();
         Log.d(TAG, "onDestroy called - cleaning up");
+
+        fingerprintExecutor.execute(() -> {
+            if (fingerprintCache != null) {
+                Log.d(TAG, "Fingerprint cache: " + fingerprintCache.getStats());
+            }
+        });
+        fingerprintExecutor.shutdown();
         
         // Stop speech recognition
         if (speechRecognizer != null) {
@@ -0,0 +1,118 @@
+package com.reactnative;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Uploads spooled PCM chunks to the backend's /speech-to-text endpoint as
+ * 16 kHz mono WAV files, the same multipart form the app sends when online.
+ * The chunk's idempotency key travels in the Idempotency-Key header so a
+ * retried upload is answered from the server's replay cache.
+ */
+public class HttpChunkUploader implements TranscriptionSpool.Uploader {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    private final String endpoint;
+    private final String languageCode;
+
+    public HttpChunkUploader(String baseUrl, String languageCode) {
+        this.endpoint = baseUrl.replaceAll("/+$", "") + "/speech-to-text";
+        this.languageCode = languageCode;
+    }
+
+    @Override
+    public String transcribe(byte[] pcm, String idempotencyKey) throws IOException {
+        String boundary = "----VaaniSpool" + UUID.randomUUID().toString().replace("-", "");
+        HttpURLConnection connection = (HttpURLConnection) new URL(endpoint).openConnection();
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+            connection.setRequestProperty("Idempotency-Key", idempotencyKey);
+
+            try (DataOutputStream out = new DataOutputStream(connection.getOutputStream())) {
+                writeField(out, boundary, "languageCode", languageCode);
+                out.writeBytes("--" + boundary + "\r\n");
+                out.writeBytes("Content-Disposition: form-data; name=\"audio\"; filename=\"" + idempotencyKey + ".wav\"\r\n");
+                out.writeBytes("Content-Type: audio/wav\r\n\r\n");
+                out.write(wavHeader(pcm.length));
+                out.write(pcm);
+                out.writeBytes("\r\n--" + boundary + "--\r\n");
+            }
+
+            int status = connection.getResponseCode();
+            String body = readBody(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+
+            if (status == 400 || status == 413 || status == 415) {
+                // The audio itself is unusable; anything else (e.g. 401/403 from bad
+                // credentials) is retried so the queued audio is kept
+                throw new TranscriptionSpool.RejectedChunkException("Chunk rejected with HTTP " + status + ": " + body);
+            }
+            if (status >= 300) {
+                throw new IOException("Transcription failed with HTTP " + status);
+            }
+
+            try {
+                return new JSONObject(body).optString("transcript", "");
+            } catch (JSONException e) {
+                throw new IOException("Unreadable transcription response: " + e.getMessage(), e);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void writeField(DataOutputStream out, String boundary, String name, String value) throws IOException {
+        out.writeBytes("--" + boundary + "\r\n");
+        out.writeBytes("Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n");
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        out.writeBytes("\r\n");
+    }
+
+    static byte[] wavHeader(int dataLength) {
+        ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(36 + dataLength);
+        header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(16);                 // PCM format chunk size
+        header.putShort((short) 1);        // Linear PCM
+        header.putShort((short) 1);        // Mono
+        header.putInt(SAMPLE_RATE);
+        header.putInt(SAMPLE_RATE * 2);    // Byte rate
+        header.putShort((short) 2);        // Block align
+        header.putShort((short) 16);       // Bits per sample
+        header.put("data".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(dataLength);
+        return header.array();
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+}
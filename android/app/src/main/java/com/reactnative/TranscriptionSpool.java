@@ -0,0 +1,485 @@
+package com.reactnative;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Disk-backed queue of captured PCM audio for transcription once the device
+ * is back online.
+ *
+ * Audio is appended to a ".part" file and sealed into numbered ".pcm" chunks
+ * of a fixed size. drain() uploads sealed chunks on a bounded worker pool,
+ * retrying transient failures with the same idempotency key, and hands the
+ * transcripts to the listener strictly in capture order. Chunks and finished
+ * transcripts live on disk until delivered, so nothing is lost if the app is
+ * killed mid-drain.
+ */
+public class TranscriptionSpool {
+    // 10 s of 16 kHz, 16-bit mono PCM - far below the backend's 10 MB upload limit
+    public static final int DEFAULT_CHUNK_BYTES = 10 * 32000;
+    public static final int DEFAULT_CONCURRENCY = 3;
+    public static final int DEFAULT_MAX_ATTEMPTS = 4;
+    public static final long DEFAULT_RETRY_DELAY_MS = 1000;
+
+    private static final String CHUNK_SUFFIX = ".pcm";
+    private static final String RESULT_SUFFIX = ".txt";
+    private static final String PART_FILE = "current.part";
+    private static final String ID_FILE = "spool.id";
+    // Next sequence to seal, so keys are never reused once the queue has drained empty
+    private static final String NEXT_SEQUENCE_FILE = "spool.next";
+
+    public interface Uploader {
+        /**
+         * Transcribes one chunk. Throw IOException for failures worth retrying
+         * and RejectedChunkException when the chunk itself will never succeed.
+         */
+        String transcribe(byte[] pcm, String idempotencyKey) throws IOException;
+    }
+
+    public interface TranscriptListener {
+        /** Called in sequence order; transcript is empty when nothing was recognized. */
+        void onTranscript(long sequence, String transcript);
+    }
+
+    /** Thrown by an Uploader when retrying the chunk cannot help (e.g. HTTP 400). */
+    public static class RejectedChunkException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public RejectedChunkException(String message) {
+            super(message);
+        }
+    }
+
+    public static final class Stats {
+        public final int queueDepth;
+        public final int uploaded;
+        public final int retries;
+        public final int failed;
+        public final int rejected;
+        public final float drainRatePerSecond;
+        public final long averageBacklogLatencyMs;
+        public final long maxBacklogLatencyMs;
+
+        Stats(int queueDepth, int uploaded, int retries, int failed, int rejected,
+              float drainRatePerSecond, long averageBacklogLatencyMs, long maxBacklogLatencyMs) {
+            this.queueDepth = queueDepth;
+            this.uploaded = uploaded;
+            this.retries = retries;
+            this.failed = failed;
+            this.rejected = rejected;
+            this.drainRatePerSecond = drainRatePerSecond;
+            this.averageBacklogLatencyMs = averageBacklogLatencyMs;
+            this.maxBacklogLatencyMs = maxBacklogLatencyMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "queueDepth=%d uploaded=%d retries=%d failed=%d rejected=%d drainRate=%.2f/s backlogLatency avg=%dms max=%dms",
+                    queueDepth, uploaded, retries, failed, rejected, drainRatePerSecond,
+                    averageBacklogLatencyMs, maxBacklogLatencyMs);
+        }
+    }
+
+    private static final class Result {
+        final String transcript;
+        final long enqueuedAtMs;
+
+        Result(String transcript, long enqueuedAtMs) {
+            this.transcript = transcript;
+            this.enqueuedAtMs = enqueuedAtMs;
+        }
+    }
+
+    private final File directory;
+    private final int chunkBytes;
+    private final Uploader uploader;
+    private final TranscriptListener listener;
+    private final int maxAttempts;
+    private final long retryDelayMs;
+    private final ExecutorService workers;
+    private final String spoolId;
+
+    private final Object drainLock = new Object();
+
+    // Guarded by this
+    private OutputStream partOutput;
+    private long partBytes;
+    private long nextSequence;
+    private long nextSequenceToDeliver;
+    private final TreeMap<Long, Result> completed = new TreeMap<>();
+    private final Set<Long> inFlight = new HashSet<>();
+    private int uploaded;
+    private int retries;
+    private int failed;
+    private int rejected;
+    private float drainRatePerSecond;
+    private long delivered;
+    private long totalBacklogLatencyMs;
+    private long maxBacklogLatencyMs;
+
+    public TranscriptionSpool(File directory, Uploader uploader, TranscriptListener listener) throws IOException {
+        this(directory, DEFAULT_CHUNK_BYTES, uploader, listener,
+                DEFAULT_CONCURRENCY, DEFAULT_MAX_ATTEMPTS, DEFAULT_RETRY_DELAY_MS);
+    }
+
+    TranscriptionSpool(File directory, int chunkBytes, Uploader uploader, TranscriptListener listener,
+                       int concurrency, int maxAttempts, long retryDelayMs) throws IOException {
+        if (chunkBytes <= 0 || chunkBytes % 2 != 0) {
+            throw new IllegalArgumentException("chunkBytes must be a positive, even number of bytes");
+        }
+        if (concurrency <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("concurrency and maxAttempts must be positive");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create spool directory " + directory);
+        }
+
+        this.directory = directory;
+        this.chunkBytes = chunkBytes;
+        this.uploader = uploader;
+        this.listener = listener;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMs = retryDelayMs;
+        this.workers = Executors.newFixedThreadPool(concurrency);
+        this.spoolId = loadSpoolId();
+        recover();
+    }
+
+    /** Appends captured 16-bit PCM, sealing a chunk every chunkBytes. */
+    public synchronized void append(byte[] pcm, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (partOutput == null) {
+                partOutput = new FileOutputStream(new File(directory, PART_FILE), true);
+            }
+            int count = (int) Math.min(length, chunkBytes - partBytes);
+            partOutput.write(pcm, offset, count);
+            partBytes += count;
+            offset += count;
+            length -= count;
+
+            if (partBytes == chunkBytes) {
+                seal(System.currentTimeMillis());
+            }
+        }
+    }
+
+    /** Seals whatever audio has been appended so far into a (short) chunk. */
+    public synchronized void flush() throws IOException {
+        if (partBytes > 0) {
+            seal(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Uploads every sealed chunk and blocks until each has succeeded, been
+     * rejected, or run out of attempts. Failed chunks stay queued for the
+     * next drain, and transcripts after them are held back until they succeed.
+     *
+     * @return the number of chunks transcribed by this call
+     */
+    public int drain() throws InterruptedException {
+        synchronized (drainLock) {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            synchronized (this) {
+                for (long sequence : pendingSequences()) {
+                    if (inFlight.add(sequence)) {
+                        tasks.add(() -> upload(sequence));
+                    }
+                }
+            }
+            if (tasks.isEmpty()) {
+                return 0;
+            }
+
+            long startedAtMs = System.currentTimeMillis();
+            int transcribed = 0;
+            for (Future<Boolean> future : workers.invokeAll(tasks)) {
+                try {
+                    if (future.get()) {
+                        transcribed++;
+                    }
+                } catch (ExecutionException e) {
+                    // Local I/O trouble; the chunk stays queued for the next drain
+                    synchronized (this) {
+                        failed++;
+                    }
+                }
+            }
+
+            long elapsedMs = Math.max(1, System.currentTimeMillis() - startedAtMs);
+            synchronized (this) {
+                drainRatePerSecond = transcribed * 1000f / elapsedMs;
+            }
+            return transcribed;
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(pendingSequences().size(), uploaded, retries, failed, rejected,
+                drainRatePerSecond,
+                delivered == 0 ? 0 : totalBacklogLatencyMs / delivered,
+                maxBacklogLatencyMs);
+    }
+
+    /** Seals pending audio and stops the upload workers. */
+    public void close() throws IOException {
+        flush();
+        workers.shutdownNow();
+    }
+
+    static String idempotencyKey(String spoolId, long sequence) {
+        return spoolId + "-" + sequence;
+    }
+
+    private boolean upload(long sequence) throws IOException, InterruptedException {
+        try {
+            return transcribeChunk(sequence);
+        } finally {
+            synchronized (this) {
+                inFlight.remove(sequence);
+            }
+        }
+    }
+
+    private boolean transcribeChunk(long sequence) throws IOException, InterruptedException {
+        File chunk = chunkFile(sequence);
+        long enqueuedAtMs = chunk.lastModified();
+        byte[] pcm = readFully(chunk);
+        String key = idempotencyKey(spoolId, sequence);
+
+        String transcript = null;
+        boolean accepted = true;
+        for (int attempt = 1; transcript == null; attempt++) {
+            try {
+                transcript = uploader.transcribe(pcm, key);
+                if (transcript == null) {
+                    transcript = "";
+                }
+            } catch (RejectedChunkException e) {
+                // Deliver an empty transcript so later chunks are not held back forever
+                synchronized (this) {
+                    rejected++;
+                }
+                transcript = "";
+                accepted = false;
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    synchronized (this) {
+                        failed++;
+                    }
+                    return false;
+                }
+                synchronized (this) {
+                    retries++;
+                }
+                Thread.sleep(retryDelayMs << (attempt - 1));
+            }
+        }
+
+        // Persist the transcript before dropping the audio, so a crash loses neither
+        File result = resultFile(sequence);
+        File temp = new File(directory, result.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(transcript.getBytes(StandardCharsets.UTF_8));
+        }
+        temp.setLastModified(enqueuedAtMs);
+        if (!temp.renameTo(result)) {
+            throw new IOException("Cannot store transcript for chunk " + sequence);
+        }
+        chunk.delete();
+
+        synchronized (this) {
+            if (accepted) {
+                uploaded++;
+            }
+            completed.put(sequence, new Result(transcript, enqueuedAtMs));
+            deliverInOrder();
+        }
+        return accepted;
+    }
+
+    // Called with this locked
+    private void deliverInOrder() {
+        while (true) {
+            Result result = completed.get(nextSequenceToDeliver);
+            if (result == null) {
+                return;
+            }
+
+            long latencyMs = Math.max(0, System.currentTimeMillis() - result.enqueuedAtMs);
+            delivered++;
+            totalBacklogLatencyMs += latencyMs;
+            maxBacklogLatencyMs = Math.max(maxBacklogLatencyMs, latencyMs);
+
+            listener.onTranscript(nextSequenceToDeliver, result.transcript);
+            resultFile(nextSequenceToDeliver).delete();
+            completed.remove(nextSequenceToDeliver);
+            nextSequenceToDeliver++;
+        }
+    }
+
+    // Called with this locked; enqueuedAtMs is where the chunk's backlog latency starts
+    private void seal(long enqueuedAtMs) throws IOException {
+        partOutput.close();
+        partOutput = null;
+        partBytes = 0;
+
+        File chunk = chunkFile(nextSequence);
+        if (!new File(directory, PART_FILE).renameTo(chunk)) {
+            throw new IOException("Cannot seal spool chunk " + chunk);
+        }
+        chunk.setLastModified(enqueuedAtMs);
+        nextSequence++;
+        storeNextSequence();
+    }
+
+    private void recover() throws IOException {
+        long lowest = Long.MAX_VALUE;
+        long highest = -1;
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    file.delete();
+                    continue;
+                }
+                long sequence = sequenceOf(file.getName());
+                if (sequence < 0) {
+                    continue;
+                }
+                lowest = Math.min(lowest, sequence);
+                highest = Math.max(highest, sequence);
+                if (file.getName().endsWith(RESULT_SUFFIX)) {
+                    String transcript = new String(readFully(file), StandardCharsets.UTF_8);
+                    completed.put(sequence, new Result(transcript, file.lastModified()));
+                }
+            }
+        }
+        // Killed between storing a transcript and deleting its audio: the transcript wins
+        for (long sequence : completed.keySet()) {
+            chunkFile(sequence).delete();
+        }
+
+        nextSequence = Math.max(highest + 1, loadNextSequence());
+        nextSequenceToDeliver = lowest == Long.MAX_VALUE ? nextSequence : lowest;
+
+        // Audio appended before the app was killed becomes a chunk of its own
+        File part = new File(directory, PART_FILE);
+        if (part.length() > 0) {
+            synchronized (this) {
+                partBytes = part.length();
+                partOutput = new FileOutputStream(part, true);
+                // Queued since its last append, not since this recovery
+                seal(part.lastModified());
+            }
+        } else {
+            part.delete();
+        }
+    }
+
+    // Called with this locked; sealed chunks still waiting for a transcript, oldest first
+    private List<Long> pendingSequences() {
+        List<Long> sequences = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            // Zero-padded names sort in sequence order
+            Arrays.sort(names);
+            for (String name : names) {
+                if (name.endsWith(CHUNK_SUFFIX)) {
+                    sequences.add(sequenceOf(name));
+                }
+            }
+        }
+        return sequences;
+    }
+
+    private String loadSpoolId() throws IOException {
+        File idFile = new File(directory, ID_FILE);
+        if (idFile.exists()) {
+            return new String(readFully(idFile), StandardCharsets.UTF_8).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        try (OutputStream out = new FileOutputStream(idFile)) {
+            out.write(id.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    private long loadNextSequence() throws IOException {
+        File file = new File(directory, NEXT_SEQUENCE_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(readFully(file), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            // Sealed chunk names still bound the sequence from below
+            return 0;
+        }
+    }
+
+    // Called with this locked
+    private void storeNextSequence() throws IOException {
+        File file = new File(directory, NEXT_SEQUENCE_FILE);
+        File temp = new File(directory, NEXT_SEQUENCE_FILE + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(Long.toString(nextSequence).getBytes(StandardCharsets.UTF_8));
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot store next spool sequence");
+        }
+    }
+
+    private File chunkFile(long sequence) {
+        return new File(directory, String.format(Locale.US, "%010d%s", sequence, CHUNK_SUFFIX));
+    }
+
+    private File resultFile(long sequence) {
+        return new File(directory, String.format(Locale.US, "%010d%s", sequence, RESULT_SUFFIX));
+    }
+
+    private static long sequenceOf(String name) {
+        int dot = name.indexOf('.');
+        if (dot <= 0 || !(name.endsWith(CHUNK_SUFFIX) || name.endsWith(RESULT_SUFFIX))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.reactnative;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AudioFingerprintCacheTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "fingerprints");
+    }
+
+    /** Two tones that hop to new random pitches every 125 ms, over a light noise floor. */
+    private static short[] clip(long seed, int seconds) {
+        Random random = new Random(seed);
+        short[] samples = new short[SAMPLE_RATE * seconds];
+        double low = 0;
+        double high = 0;
+        for (int i = 0; i < samples.length; i++) {
+            if (i % 2000 == 0) {
+                low = 200 + random.nextInt(3000);
+                high = 300 + random.nextInt(4000);
+            }
+            samples[i] = (short) (6000 * Math.sin(2 * Math.PI * low * i / SAMPLE_RATE)
+                    + 4000 * Math.sin(2 * Math.PI * high * i / SAMPLE_RATE)
+                    + 300 * random.nextGaussian());
+        }
+        return samples;
+    }
+
+    @Test
+    public void replayedClipIsServedFromCache() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        short[] voiceNote = clip(1, 4);
+        cache.store(voiceNote, "see you at eight", 900);
+
+        AudioFingerprintCache.Match match = cache.lookup(voiceNote);
+
+        assertNotNull(match);
+        assertEquals("see you at eight", match.transcript);
+        assertEquals(900, match.recognitionLatencyMs);
+    }
+
+    @Test
+    public void rewoundSegmentMatchesMidClip() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        short[] video = clip(2, 4);
+        cache.store(video, "and that is the whole recipe", 1200);
+
+        // Replay starts 1 s in, not aligned to the fingerprint hop
+        short[] segment = Arrays.copyOfRange(video, SAMPLE_RATE + 100, 3 * SAMPLE_RATE + 100);
+
+        AudioFingerprintCache.Match match = cache.lookup(segment);
+        assertNotNull(match);
+        assertEquals("and that is the whole recipe", match.transcript);
+        // Within one fingerprint hop (32 ms) of where the segment starts
+        assertEquals(1006, match.offsetMs, 32);
+        assertEquals(match.entryId, cache.lookup(video).entryId);
+    }
+
+    @Test
+    public void servesOnlyTheWordsAfterTheMatchedOffset() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        short[] video = clip(15, 8);
+        cache.store(video, "one two three four five six seven eight", 1200);
+
+        short[] secondHalf = Arrays.copyOfRange(video, 4 * SAMPLE_RATE, 6 * SAMPLE_RATE);
+        AudioFingerprintCache.Match rewound = cache.lookup(secondHalf);
+        assertNotNull(rewound);
+        assertEquals("five six seven eight", rewound.transcriptFromOffset());
+
+        AudioFingerprintCache.Match fromStart = cache.lookup(Arrays.copyOf(video, 2 * SAMPLE_RATE));
+        assertEquals("one two three four five six seven eight", fromStart.transcriptFromOffset());
+    }
+
+    @Test
+    public void noisyReplayStillMatches() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        short[] clip = clip(3, 4);
+        cache.store(clip, "forwarded clip", 700);
+
+        Random random = new Random(42);
+        short[] noisy = new short[clip.length];
+        for (int i = 0; i < clip.length; i++) {
+            noisy[i] = (short) (clip[i] + 1500 * random.nextGaussian());
+        }
+
+        assertNotNull(cache.lookup(noisy));
+    }
+
+    @Test
+    public void unrelatedAudioAndSilenceMiss() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        cache.store(clip(4, 4), "first", 700);
+
+        assertNull(cache.lookup(clip(5, 4)));
+        assertNull(cache.lookup(new short[2 * SAMPLE_RATE]));
+    }
+
+    @Test
+    public void lateSegmentOfLongClipMatches() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        short[] lecture = clip(13, 60);
+        cache.store(lecture, "closing remarks", 2500);
+
+        short[] ending = Arrays.copyOfRange(lecture, 56 * SAMPLE_RATE + 100, 58 * SAMPLE_RATE + 100);
+
+        AudioFingerprintCache.Match match = cache.lookup(ending);
+        assertNotNull(match);
+        assertEquals("closing remarks", match.transcript);
+    }
+
+    @Test
+    public void windowedFingerprintsMatchLikeWholeClip() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        short[] clip = clip(14, 8);
+
+        // Fingerprint window by window, as the service does while audio arrives
+        int windows = clip.length / AudioFingerprintCache.WINDOW_SAMPLES;
+        long[] landmarks = new long[0];
+        for (int w = 0; w < windows; w++) {
+            short[] window = Arrays.copyOfRange(clip,
+                    w * AudioFingerprintCache.WINDOW_SAMPLES, (w + 1) * AudioFingerprintCache.WINDOW_SAMPLES);
+            long[] windowLandmarks = AudioFingerprintCache.fingerprint(window, w * AudioFingerprintCache.FRAMES_PER_WINDOW);
+            int offset = landmarks.length;
+            landmarks = Arrays.copyOf(landmarks, offset + windowLandmarks.length);
+            System.arraycopy(windowLandmarks, 0, landmarks, offset, windowLandmarks.length);
+        }
+        cache.store(landmarks, "stitched", 900);
+
+        short[] segment = Arrays.copyOfRange(clip, 3 * SAMPLE_RATE + 300, 5 * SAMPLE_RATE + 300);
+        AudioFingerprintCache.Match match = cache.lookup(segment);
+        assertNotNull(match);
+        assertEquals("stitched", match.transcript);
+    }
+
+    @Test
+    public void lookupsDoNotCountTowardHitRate() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        short[] clip = clip(6, 3);
+        cache.store(clip, "hello", 800);
+
+        cache.lookup(clip);
+        cache.lookup(clip(7, 3));
+
+        assertEquals(0, cache.getStats().hits);
+        assertEquals(0, cache.getStats().misses);
+    }
+
+    @Test
+    public void reportsHitRateAndLatencySaved() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        short[] clip = clip(6, 3);
+        cache.store(clip, "hello", 800);
+        AudioFingerprintCache.Match match = cache.lookup(clip);
+
+        cache.recordHit(match, 300);
+        // Served later than the recognizer took originally: nothing saved
+        cache.recordHit(match, 1000);
+        cache.recordMiss();
+
+        AudioFingerprintCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.hits);
+        assertEquals(1, stats.misses);
+        assertEquals(2f / 3f, stats.hitRate(), 0.001f);
+        assertEquals(500, stats.latencySavedMs);
+    }
+
+    @Test
+    public void storingSameAudioTwiceKeepsOneEntry() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 10);
+        short[] clip = clip(8, 3);
+        cache.store(clip, "hello", 800);
+        cache.store(clip, "hello", 800);
+
+        assertEquals(1, cache.getStats().entries);
+    }
+
+    @Test
+    public void entriesSurviveRestart() {
+        short[] clip = clip(9, 3);
+        new AudioFingerprintCache(directory, 10).store(clip, "persisted", 650);
+
+        AudioFingerprintCache.Match match = new AudioFingerprintCache(directory, 10).lookup(clip);
+
+        assertNotNull(match);
+        assertEquals("persisted", match.transcript);
+        assertEquals(650, match.recognitionLatencyMs);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondCapacity() {
+        AudioFingerprintCache cache = new AudioFingerprintCache(directory, 2);
+        short[] first = clip(10, 3);
+        short[] second = clip(11, 3);
+        cache.store(first, "first", 500);
+        cache.store(second, "second", 500);
+
+        // Touch the first clip so the second becomes the eviction candidate
+        assertNotNull(cache.lookup(first));
+        cache.store(clip(12, 3), "third", 500);
+
+        assertEquals(2, cache.getStats().entries);
+        assertEquals(2, directory.list().length);
+        assertNotNull(cache.lookup(first));
+        assertNull(cache.lookup(second));
+    }
+
+    @Test
+    public void convertsLittleEndianPcm() {
+        byte[] pcm = {0x34, 0x12, (byte) 0xff, (byte) 0xff, 0x00, (byte) 0x80, 0x7f};
+
+        short[] samples = AudioFingerprintCache.toSamples(pcm, pcm.length);
+
+        assertEquals(3, samples.length);
+        assertEquals(0x1234, samples[0]);
+        assertEquals(-1, samples[1]);
+        assertEquals(Short.MIN_VALUE, samples[2]);
+    }
+}
@@ -0,0 +1,342 @@
+package com.reactnative;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.speech.RecognitionListener;
+import android.speech.SpeechRecognizer;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.TextView;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ServiceController;
+
+/**
+ * Replays a {@link RecognitionTimeline} into {@link FloatingCaptionService} on
+ * Robolectric's virtual clock and records what the overlay actually showed.
+ *
+ * The service runs for real (layouts, window manager, main-looper handlers);
+ * only the SpeechRecognizer is swapped for a mock so the timeline can drive
+ * its listener and every startListening() call can be timestamped.
+ * Fingerprinting runs on the service's own executor; the harness waits for it
+ * after every event, so cache hits land at deterministic virtual times.
+ */
+final class CaptionReplayHarness {
+
+    /**
+     * Extra virtual time allowed after the last event so pending restarts can
+     * fire. Deliberately fixed: a restart slower than this shows up as a
+     * session that was never restarted.
+     */
+    static final long DEFAULT_SETTLE_MS = 5000;
+
+    static final class ReplayableCaptionService extends FloatingCaptionService {
+        SpeechRecognizer recognizer;
+
+        @Override
+        SpeechRecognizer createSpeechRecognizer() {
+            return recognizer;
+        }
+    }
+
+    static final class Caption {
+        final long atMs;
+        final String text;
+        // How long the caption stayed on screen before the next update (or the end of the replay)
+        long dwellMs;
+
+        Caption(long atMs, String text) {
+            this.atMs = atMs;
+            this.text = text;
+        }
+
+        boolean isFinal() {
+            return text.startsWith("💬");
+        }
+
+        @Override
+        public String toString() {
+            return atMs + "+" + dwellMs + " " + text;
+        }
+    }
+
+    /** Caption output and simulated end-to-end metrics for one replay. */
+    static final class Report {
+        final List<Caption> captions;
+        final List<Long> listenStarts;
+        final List<Long> listeningGaps;
+        final int sessionsNotRestarted;
+        // Times the service cancelled the recognizer while captioning was on
+        final List<Long> cancels;
+        final AudioFingerprintCache.Stats fingerprintStats;
+
+        Report(List<Caption> captions, List<Long> listenStarts, List<Long> listeningGaps,
+               int sessionsNotRestarted, List<Long> cancels, AudioFingerprintCache.Stats fingerprintStats) {
+            this.captions = Collections.unmodifiableList(captions);
+            this.listenStarts = Collections.unmodifiableList(listenStarts);
+            this.listeningGaps = Collections.unmodifiableList(listeningGaps);
+            this.sessionsNotRestarted = sessionsNotRestarted;
+            this.cancels = Collections.unmodifiableList(cancels);
+            this.fingerprintStats = fingerprintStats;
+        }
+
+        /** Number of times a given caption text appeared on screen. */
+        int timesShown(String text) {
+            int shown = 0;
+            for (Caption caption : captions) {
+                if (caption.text.equals(text)) {
+                    shown++;
+                }
+            }
+            return shown;
+        }
+
+        /** Number of times the caption text on screen changed. */
+        int updateCount() {
+            return captions.size();
+        }
+
+        String lastCaption() {
+            return captions.isEmpty() ? null : captions.get(captions.size() - 1).text;
+        }
+
+        List<String> captionTexts() {
+            List<String> texts = new ArrayList<>();
+            for (Caption caption : captions) {
+                texts.add(caption.text);
+            }
+            return texts;
+        }
+
+        long maxListeningGapMs() {
+            return max(listeningGaps);
+        }
+
+        /** How long after atMs the service next started listening, or -1 if it never did. */
+        long listeningGapAfter(long atMs) {
+            Long restart = firstAtOrAfter(listenStarts, atMs);
+            return restart == null ? -1 : restart - atMs;
+        }
+
+        /** How long each caption stayed on screen, in render order. */
+        List<Long> captionDwells() {
+            List<Long> dwells = new ArrayList<>();
+            for (Caption caption : captions) {
+                dwells.add(caption.dwellMs);
+            }
+            return dwells;
+        }
+
+        /** Shortest time a recognized result stayed readable before something replaced it. */
+        long minFinalCaptionDwellMs() {
+            long min = Long.MAX_VALUE;
+            for (Caption caption : captions) {
+                if (caption.isFinal()) {
+                    min = Math.min(min, caption.dwellMs);
+                }
+            }
+            return min == Long.MAX_VALUE ? 0 : min;
+        }
+
+        @Override
+        public String toString() {
+            return "updates=" + updateCount()
+                    + " listeningGaps=" + listeningGaps
+                    + " captions=" + captions
+                    + " notRestarted=" + sessionsNotRestarted
+                    + " cancels=" + cancels
+                    + " fingerprints=" + fingerprintStats;
+        }
+
+        private static long max(List<Long> values) {
+            long max = 0;
+            for (long value : values) {
+                max = Math.max(max, value);
+            }
+            return max;
+        }
+    }
+
+    private final long settleMs;
+
+    CaptionReplayHarness() {
+        this(DEFAULT_SETTLE_MS);
+    }
+
+    CaptionReplayHarness(long settleMs) {
+        this.settleMs = settleMs;
+    }
+
+    Report replay(RecognitionTimeline timeline) {
+        final List<RecognitionListener> listeners = new ArrayList<>();
+        final List<Long> listenStarts = new ArrayList<>();
+        final List<Caption> captions = new ArrayList<>();
+        final List<Long> cancels = new ArrayList<>();
+
+        SpeechRecognizer recognizer = mock(SpeechRecognizer.class);
+        doAnswer(invocation -> {
+            listeners.add(invocation.getArgument(0));
+            return null;
+        }).when(recognizer).setRecognitionListener(any());
+
+        ServiceController<ReplayableCaptionService> controller =
+                Robolectric.buildService(ReplayableCaptionService.class);
+        controller.get().recognizer = recognizer;
+        ReplayableCaptionService service = controller.create().get();
+        if (listeners.isEmpty()) {
+            throw new IllegalStateException("FloatingCaptionService did not register a RecognitionListener");
+        }
+
+        final long origin = SystemClock.uptimeMillis();
+        doAnswer(invocation -> {
+            listenStarts.add(SystemClock.uptimeMillis() - origin);
+            return null;
+        }).when(recognizer).startListening(any());
+        doAnswer(invocation -> {
+            cancels.add(SystemClock.uptimeMillis() - origin);
+            return null;
+        }).when(recognizer).cancel();
+
+        TextView captionText = service.getCaptionText();
+        captionText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                captions.add(new Caption(SystemClock.uptimeMillis() - origin, s.toString()));
+            }
+        });
+
+        List<Long> cancelsWhileCaptioning;
+        AudioFingerprintCache.Stats fingerprintStats;
+        try {
+            service.toggleCaptioning();
+            idle(service);
+
+            RecognitionListener recognitionListener = listeners.get(0);
+            for (RecognitionTimeline.Event event : timeline.events()) {
+                advanceTo(origin + event.atMs);
+                dispatch(recognitionListener, event);
+                idle(service);
+            }
+            advanceTo(SystemClock.uptimeMillis() + settleMs);
+            idle(service);
+
+            cancelsWhileCaptioning = new ArrayList<>(cancels);
+            fingerprintStats = service.getFingerprintCache() == null ? null : service.getFingerprintCache().getStats();
+        } finally {
+            controller.destroy();
+        }
+
+        return buildReport(timeline, captions, listenStarts, SystemClock.uptimeMillis() - origin,
+                cancelsWhileCaptioning, fingerprintStats);
+    }
+
+    private static void dispatch(RecognitionListener listener, RecognitionTimeline.Event event) {
+        switch (event.kind) {
+            case READY:
+                listener.onReadyForSpeech(new Bundle());
+                break;
+            case BEGIN:
+                listener.onBeginningOfSpeech();
+                break;
+            case END:
+                listener.onEndOfSpeech();
+                break;
+            case PARTIAL:
+                listener.onPartialResults(matches(event.text));
+                break;
+            case RESULT:
+                listener.onResults(matches(event.text));
+                break;
+            case ERROR:
+                listener.onError(event.errorCode);
+                break;
+            case AUDIO:
+                listener.onBufferReceived(event.pcm);
+                break;
+        }
+    }
+
+    private static Bundle matches(String text) {
+        ArrayList<String> matches = new ArrayList<>();
+        if (text != null && !text.isEmpty()) {
+            matches.add(text);
+        }
+        Bundle bundle = new Bundle();
+        bundle.putStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION, matches);
+        return bundle;
+    }
+
+    private static Report buildReport(RecognitionTimeline timeline, List<Caption> captions,
+                                      List<Long> listenStarts, long endedAtMs, List<Long> cancels,
+                                      AudioFingerprintCache.Stats fingerprintStats) {
+        List<Long> listeningGaps = new ArrayList<>();
+        int notRestarted = 0;
+
+        for (int i = 0; i < captions.size(); i++) {
+            long replacedAtMs = i + 1 < captions.size() ? captions.get(i + 1).atMs : endedAtMs;
+            captions.get(i).dwellMs = replacedAtMs - captions.get(i).atMs;
+        }
+
+        for (RecognitionTimeline.Event event : timeline.events()) {
+            if (event.endsSession()) {
+                Long restart = firstAtOrAfter(listenStarts, event.atMs);
+                if (restart != null) {
+                    listeningGaps.add(restart - event.atMs);
+                } else {
+                    notRestarted++;
+                }
+            }
+        }
+
+        return new Report(captions, listenStarts, listeningGaps, notRestarted, cancels, fingerprintStats);
+    }
+
+    private static Long firstAtOrAfter(List<Long> times, long atMs) {
+        for (long time : times) {
+            if (time >= atMs) {
+                return time;
+            }
+        }
+        return null;
+    }
+
+    private static void advanceTo(long uptimeMillis) {
+        long delta = uptimeMillis - SystemClock.uptimeMillis();
+        if (delta > 0) {
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(delta));
+        }
+    }
+
+    /**
+     * Runs everything due on the main looper, including captions posted back by
+     * the service's fingerprint executor, which runs on a real thread.
+     */
+    private static void idle(FloatingCaptionService service) {
+        try {
+            do {
+                shadowOf(Looper.getMainLooper()).idle();
+                service.awaitFingerprinting();
+            } while (!shadowOf(Looper.getMainLooper()).isIdle());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.reactnative;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.speech.SpeechRecognizer;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Replays recognizer timelines through the real service and checks what the
+ * overlay showed. Caption freshness is measured as dwell (how long each caption
+ * stayed on screen before being replaced), not as staleness against the audio:
+ * the timelines carry no ground truth for when the speaker actually said something.
+ */
+@RunWith(RobolectricTestRunner.class)
+// A plain Application: MainApplication loads React Native's native libraries, which a JVM cannot
+@Config(sdk = 34, application = Application.class)
+public class FloatingCaptionServiceReplayTest {
+    // Fixed budgets, independent of the service's own delay constants
+    private static final long LISTENING_GAP_BUDGET_MS = 3000L;
+    private static final long ERROR_RESTART_BUDGET_MS = 1000L;
+    private static final long MIN_FINAL_CAPTION_DWELL_MS = 2000L;
+    private static final long VOICE_NOTE_CLIP = 22;
+
+    private final CaptionReplayHarness harness = new CaptionReplayHarness();
+
+    @Test
+    public void rendersPartialsAndFinalResultInOrder() {
+        CaptionReplayHarness.Report report = harness.replay(new RecognitionTimeline()
+                .ready(0)
+                .begin(300)
+                .partial(600, "hello")
+                .partial(900, "hello there")
+                .end(1200)
+                .result(1400, "hello there friend"));
+
+        assertEquals(Arrays.asList(
+                "🎤 Ready to listen...",
+                "🎤 Starting microphone...",
+                "🎤 Listening...",
+                "🗣️ Speaking...",
+                "✏️ hello...",
+                "✏️ hello there...",
+                "🔄 Processing...",
+                "💬 hello there friend"), report.captionTexts());
+        assertEquals(8, report.updateCount());
+        assertEquals(Arrays.asList(0L, 0L, 300L, 300L, 300L, 300L, 200L, CaptionReplayHarness.DEFAULT_SETTLE_MS),
+                report.captionDwells());
+    }
+
+    @Test
+    public void restartsListeningAfterResultDelay() {
+        CaptionReplayHarness.Report report = harness.replay(new RecognitionTimeline()
+                .ready(0)
+                .result(1000, "good morning"));
+
+        assertEquals(2, report.listenStarts.size());
+        assertEquals(1, report.listeningGaps.size());
+        assertTrue("restart too slow: " + report, report.maxListeningGapMs() <= LISTENING_GAP_BUDGET_MS);
+        assertEquals("💬 good morning", report.lastCaption());
+    }
+
+    @Test
+    public void restartsImmediatelyWhenResultsAreEmpty() {
+        CaptionReplayHarness.Report report = harness.replay(new RecognitionTimeline()
+                .ready(0)
+                .result(800, ""));
+
+        assertEquals(Arrays.asList(0L), report.listeningGaps);
+    }
+
+    @Test
+    public void recoverableErrorShowsMessageAndRestartsAfterDelay() {
+        CaptionReplayHarness.Report report = harness.replay(new RecognitionTimeline()
+                .ready(0)
+                .error(500, SpeechRecognizer.ERROR_NETWORK_TIMEOUT));
+
+        assertEquals("❌ Network timeout", report.lastCaption());
+        assertEquals(0, report.sessionsNotRestarted);
+        assertTrue("restart too slow: " + report, report.maxListeningGapMs() <= ERROR_RESTART_BUDGET_MS);
+    }
+
+    @Test
+    public void clientErrorDoesNotRestart() {
+        CaptionReplayHarness.Report report = harness.replay(new RecognitionTimeline()
+                .ready(0)
+                .error(500, SpeechRecognizer.ERROR_CLIENT));
+
+        assertEquals("❌ Client side error", report.lastCaption());
+        assertEquals(Arrays.asList(0L), report.listenStarts);
+        assertEquals(1, report.sessionsNotRestarted);
+    }
+
+    /** A 10 s clip recognized once, then played again from the start once listening restarts at 13 s. */
+    private static RecognitionTimeline recognizedThenReplayed() {
+        return new RecognitionTimeline()
+                .ready(0)
+                .audio(0, VOICE_NOTE_CLIP, 0, 10000)
+                .result(10000, "see you at eight")
+                .ready(13000)
+                // The first 2 s fingerprint window is complete at 15 s
+                .audio(13000, VOICE_NOTE_CLIP, 0, 2500);
+    }
+
+    @Test
+    public void recognizedAudioIsCachedAndCountedAsMiss() {
+        CaptionReplayHarness.Report report = harness.replay(new RecognitionTimeline()
+                .ready(0)
+                .audio(0, VOICE_NOTE_CLIP, 0, 5000)
+                .result(5000, "see you at eight"));
+
+        assertEquals("💬 see you at eight", report.lastCaption());
+        assertTrue("recognizer cancelled on a miss: " + report, report.cancels.isEmpty());
+        assertEquals(0, report.fingerprintStats.hits);
+        assertEquals(1, report.fingerprintStats.misses);
+        assertEquals(1, report.fingerprintStats.entries);
+    }
+
+    @Test
+    public void replayedAudioIsCaptionedFromCacheAndRecognitionCancelled() {
+        CaptionReplayHarness.Report report = harness.replay(recognizedThenReplayed()
+                // The cancelled session still reports; none of it may reach the overlay
+                .error(15100, SpeechRecognizer.ERROR_RECOGNIZER_BUSY)
+                .result(15500, "see you at ate"));
+
+        assertEquals(Arrays.asList(15000L), report.cancels);
+        assertEquals(2, report.timesShown("💬 see you at eight"));
+        assertEquals("💬 see you at eight", report.lastCaption());
+        long restartAfterHit = report.listeningGapAfter(15000);
+        assertTrue("not restarted after hit: " + report,
+                restartAfterHit > 0 && restartAfterHit <= LISTENING_GAP_BUDGET_MS);
+        assertEquals(1, report.fingerprintStats.hits);
+        assertEquals(1, report.fingerprintStats.misses);
+        // Recognition took 10 s the first time; the cached caption was up 2 s into the replay
+        assertEquals(8000, report.fingerprintStats.latencySavedMs);
+    }
+
+    @Test
+    public void errorAfterCacheHitStillRestartsListening() {
+        CaptionReplayHarness.Report report = harness.replay(recognizedThenReplayed()
+                // Listening restarted at 18 s, before the recognizer was ready again
+                .error(18500, SpeechRecognizer.ERROR_NETWORK));
+
+        assertEquals("❌ Network error", report.lastCaption());
+        assertEquals(0, report.sessionsNotRestarted);
+        long restartAfterError = report.listeningGapAfter(18500);
+        assertTrue("not restarted after error: " + report,
+                restartAfterError >= 0 && restartAfterError <= ERROR_RESTART_BUDGET_MS);
+    }
+
+    @Test
+    public void continuingReplayIsServedAndCountedOnce() {
+        CaptionReplayHarness.Report report = harness.replay(recognizedThenReplayed()
+                // Listening restarts at 18 s while the same playback is 5 s into the clip
+                .ready(18000)
+                .audio(18000, VOICE_NOTE_CLIP, 5000, 2500));
+
+        assertEquals(2, report.cancels.size());
+        assertEquals(2, report.timesShown("💬 see you at eight"));
+        assertEquals(1, report.fingerprintStats.hits);
+        assertEquals(8000, report.fingerprintStats.latencySavedMs);
+    }
+
+    @Test
+    public void recordedVoiceNoteStaysWithinLatencyBudget() throws Exception {
+        CaptionReplayHarness.Report report = harness.replay(RecognitionTimeline.load("timelines/voice_note.txt"));
+
+        assertEquals("💬 bring the charger", report.lastCaption());
+        assertEquals(0, report.sessionsNotRestarted);
+        assertTrue("listening gap regressed: " + report,
+                report.maxListeningGapMs() <= LISTENING_GAP_BUDGET_MS);
+        assertTrue("results replaced too quickly: " + report,
+                report.minFinalCaptionDwellMs() >= MIN_FINAL_CAPTION_DWELL_MS);
+    }
+}
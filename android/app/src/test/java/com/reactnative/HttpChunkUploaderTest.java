@@ -0,0 +1,139 @@
+package com.reactnative;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.app.Application;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Runs the uploader against a local server that answers like
+ * backend/mock-server.js, so the multipart contract is checked without Node.
+ */
+@RunWith(RobolectricTestRunner.class)
+// A plain Application: MainApplication loads React Native's native libraries, which a JVM cannot
+@Config(sdk = 34, application = Application.class)
+public class HttpChunkUploaderTest {
+    private HttpServer server;
+    private final List<String> idempotencyKeys = Collections.synchronizedList(new ArrayList<>());
+    private volatile String lastBody;
+    private volatile int status = 200;
+    private volatile String response = "{\"success\":true,\"transcript\":\"Hello there\",\"confidence\":0.95,\"mock\":true}";
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/speech-to-text", exchange -> {
+            idempotencyKeys.add(exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+            lastBody = new String(readAll(exchange.getRequestBody()), StandardCharsets.ISO_8859_1);
+
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private HttpChunkUploader uploader() {
+        return new HttpChunkUploader("http://127.0.0.1:" + server.getAddress().getPort() + "/", "en-US");
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void uploadsChunkAsWavWithIdempotencyKey() throws IOException {
+        String transcript = uploader().transcribe(new byte[3200], "spool-7");
+
+        assertEquals("Hello there", transcript);
+        assertEquals(Collections.singletonList("spool-7"), idempotencyKeys);
+        assertTrue(lastBody.contains("name=\"audio\"; filename=\"spool-7.wav\""));
+        assertTrue(lastBody.contains("RIFF"));
+        assertTrue(lastBody.contains("WAVEfmt "));
+        assertTrue(lastBody.contains("name=\"languageCode\"\r\n\r\nen-US"));
+    }
+
+    @Test
+    public void noSpeechResponseIsAnEmptyTranscript() throws IOException {
+        response = "{\"success\":false,\"message\":\"No speech detected in audio\",\"transcript\":\"\",\"confidence\":0}";
+
+        assertEquals("", uploader().transcribe(new byte[320], "spool-1"));
+    }
+
+    @Test
+    public void serverErrorsAreRetryable() {
+        status = 503;
+        response = "{\"success\":false,\"error\":\"Injected mock failure\"}";
+
+        try {
+            uploader().transcribe(new byte[320], "spool-1");
+            fail("expected IOException");
+        } catch (TranscriptionSpool.RejectedChunkException e) {
+            fail("a 503 must not reject the chunk");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void authorizationErrorsAreRetryable() {
+        status = 403;
+        response = "{\"error\":\"Invalid credentials\"}";
+
+        try {
+            uploader().transcribe(new byte[320], "spool-1");
+            fail("expected IOException");
+        } catch (TranscriptionSpool.RejectedChunkException e) {
+            fail("a 403 must keep the chunk queued");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test(expected = TranscriptionSpool.RejectedChunkException.class)
+    public void clientErrorsRejectTheChunk() throws IOException {
+        status = 400;
+        response = "{\"error\":\"No audio file provided\"}";
+
+        uploader().transcribe(new byte[320], "spool-1");
+    }
+
+    @Test
+    public void wavHeaderDescribes16kMonoPcm() {
+        byte[] header = HttpChunkUploader.wavHeader(32000);
+
+        assertEquals(44, header.length);
+        assertEquals("RIFF", new String(header, 0, 4, StandardCharsets.US_ASCII));
+        assertEquals(16000, (header[24] & 0xff) | (header[25] & 0xff) << 8 | (header[26] & 0xff) << 16);
+        assertEquals(32000, (header[40] & 0xff) | (header[41] & 0xff) << 8 | (header[42] & 0xff) << 16);
+    }
+}
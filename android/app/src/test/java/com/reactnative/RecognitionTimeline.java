@@ -0,0 +1,211 @@
+package com.reactnative;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A recorded sequence of RecognitionListener callbacks, each stamped with the
+ * offset (in ms) from the moment captioning was switched on.
+ *
+ * Timelines can be built in code or loaded from a text resource with one event
+ * per line:
+ *
+ *   # offsetMs kind [payload]
+ *   0     ready
+ *   400   begin
+ *   900   partial hello
+ *   1600  end
+ *   1800  result hello there
+ *   5000  error 7
+ *   6000  audio 3 0 2000
+ *
+ * An audio line plays a synthetic clip through onBufferReceived: clip seed,
+ * offset into the clip and length, both in ms, in 500 ms buffers starting at
+ * the line's offset.
+ */
+final class RecognitionTimeline {
+
+    enum Kind {
+        READY, BEGIN, END, PARTIAL, RESULT, ERROR, AUDIO
+    }
+
+    static final int SAMPLE_RATE = 16000;
+    static final long AUDIO_BUFFER_MS = 500;
+
+    static final class Event {
+        final long atMs;
+        final Kind kind;
+        final String text;
+        final int errorCode;
+        // 16-bit little-endian mono PCM for AUDIO events
+        final byte[] pcm;
+
+        Event(long atMs, Kind kind, String text, int errorCode) {
+            this(atMs, kind, text, errorCode, null);
+        }
+
+        Event(long atMs, Kind kind, String text, int errorCode, byte[] pcm) {
+            this.atMs = atMs;
+            this.kind = kind;
+            this.text = text;
+            this.errorCode = errorCode;
+            this.pcm = pcm;
+        }
+
+        /** Results and errors close a recognition session; the service is expected to listen again. */
+        boolean endsSession() {
+            return kind == Kind.RESULT || kind == Kind.ERROR;
+        }
+
+        @Override
+        public String toString() {
+            return atMs + " " + kind + (text != null ? " " + text : "")
+                    + (kind == Kind.ERROR ? " " + errorCode : "");
+        }
+    }
+
+    private final List<Event> events = new ArrayList<>();
+
+    RecognitionTimeline ready(long atMs) {
+        return add(new Event(atMs, Kind.READY, null, 0));
+    }
+
+    RecognitionTimeline begin(long atMs) {
+        return add(new Event(atMs, Kind.BEGIN, null, 0));
+    }
+
+    RecognitionTimeline end(long atMs) {
+        return add(new Event(atMs, Kind.END, null, 0));
+    }
+
+    RecognitionTimeline partial(long atMs, String text) {
+        return add(new Event(atMs, Kind.PARTIAL, text, 0));
+    }
+
+    /** An empty text records a session that finished without any match. */
+    RecognitionTimeline result(long atMs, String text) {
+        return add(new Event(atMs, Kind.RESULT, text, 0));
+    }
+
+    RecognitionTimeline error(long atMs, int errorCode) {
+        return add(new Event(atMs, Kind.ERROR, null, errorCode));
+    }
+
+    /**
+     * Plays lengthMs of synthetic clip clipSeed, starting fromMs into the clip,
+     * as consecutive recognizer buffers. The same seed always yields the same
+     * audio, so a clip played twice is a replay.
+     */
+    RecognitionTimeline audio(long atMs, long clipSeed, long fromMs, long lengthMs) {
+        short[] clip = syntheticClip(clipSeed, fromMs + lengthMs);
+        for (long played = 0; played < lengthMs; played += AUDIO_BUFFER_MS) {
+            long bufferMs = Math.min(AUDIO_BUFFER_MS, lengthMs - played);
+            int first = (int) ((fromMs + played) * SAMPLE_RATE / 1000);
+            int count = (int) (bufferMs * SAMPLE_RATE / 1000);
+            byte[] pcm = new byte[count * 2];
+            for (int i = 0; i < count; i++) {
+                pcm[2 * i] = (byte) clip[first + i];
+                pcm[2 * i + 1] = (byte) (clip[first + i] >> 8);
+            }
+            add(new Event(atMs + played, Kind.AUDIO,
+                    "clip " + clipSeed + " @" + (fromMs + played) + "ms", 0, pcm));
+        }
+        return this;
+    }
+
+    /** Two tones that hop to new random pitches every 125 ms, over a light noise floor. */
+    private static short[] syntheticClip(long seed, long lengthMs) {
+        Random random = new Random(seed);
+        short[] samples = new short[(int) (lengthMs * SAMPLE_RATE / 1000)];
+        double low = 0;
+        double high = 0;
+        for (int i = 0; i < samples.length; i++) {
+            if (i % 2000 == 0) {
+                low = 200 + random.nextInt(3000);
+                high = 300 + random.nextInt(4000);
+            }
+            samples[i] = (short) (6000 * Math.sin(2 * Math.PI * low * i / SAMPLE_RATE)
+                    + 4000 * Math.sin(2 * Math.PI * high * i / SAMPLE_RATE)
+                    + 300 * random.nextGaussian());
+        }
+        return samples;
+    }
+
+    List<Event> events() {
+        return Collections.unmodifiableList(events);
+    }
+
+    private RecognitionTimeline add(Event event) {
+        if (!events.isEmpty() && event.atMs < events.get(events.size() - 1).atMs) {
+            throw new IllegalArgumentException("Timeline events must be in order: " + event);
+        }
+        events.add(event);
+        return this;
+    }
+
+    /** Loads a timeline from a classpath resource, e.g. "timelines/voice_note.txt". */
+    static RecognitionTimeline load(String resource) throws IOException {
+        InputStream in = RecognitionTimeline.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Timeline resource not found: " + resource);
+        }
+
+        RecognitionTimeline timeline = new RecognitionTimeline();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+", 3);
+                if (parts.length < 2) {
+                    throw new IOException(resource + ":" + lineNumber + ": expected '<offsetMs> <kind> [payload]'");
+                }
+
+                long atMs = Long.parseLong(parts[0]);
+                String payload = parts.length > 2 ? parts[2] : "";
+                switch (parts[1]) {
+                    case "ready":
+                        timeline.ready(atMs);
+                        break;
+                    case "begin":
+                        timeline.begin(atMs);
+                        break;
+                    case "end":
+                        timeline.end(atMs);
+                        break;
+                    case "partial":
+                        timeline.partial(atMs, payload);
+                        break;
+                    case "result":
+                        timeline.result(atMs, payload);
+                        break;
+                    case "error":
+                        timeline.error(atMs, Integer.parseInt(payload.trim()));
+                        break;
+                    case "audio":
+                        String[] clip = payload.trim().split("\\s+");
+                        if (clip.length != 3) {
+                            throw new IOException(resource + ":" + lineNumber + ": expected 'audio <seed> <fromMs> <lengthMs>'");
+                        }
+                        timeline.audio(atMs, Long.parseLong(clip[0]), Long.parseLong(clip[1]), Long.parseLong(clip[2]));
+                        break;
+                    default:
+                        throw new IOException(resource + ":" + lineNumber + ": unknown event kind '" + parts[1] + "'");
+                }
+            }
+        }
+        return timeline;
+    }
+}
@@ -0,0 +1,248 @@
+package com.reactnative;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TranscriptionSpoolTest {
+    private static final int CHUNK_BYTES = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private final List<String> transcript = Collections.synchronizedList(new ArrayList<>());
+    private final List<TranscriptionSpool> opened = new ArrayList<>();
+
+    /** Stands in for the backend: transcribes a chunk as its first byte, failing on demand. */
+    private static class FakeBackend implements TranscriptionSpool.Uploader {
+        final Map<String, Integer> attemptsByKey = Collections.synchronizedMap(new HashMap<>());
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        volatile int failuresPerChunk = 0;
+        volatile byte unavailableChunk = -1;
+        volatile byte rejectedChunk = -1;
+
+        @Override
+        public String transcribe(byte[] pcm, String idempotencyKey) throws IOException {
+            int running = active.incrementAndGet();
+            maxActive.accumulateAndGet(running, Math::max);
+            try {
+                int attempt = attemptsByKey.merge(idempotencyKey, 1, Integer::sum);
+                // Later chunks finish first, so delivery order has to be restored
+                Thread.sleep(20 * Math.max(0, 5 - pcm[0]));
+                if (pcm[0] == rejectedChunk) {
+                    throw new TranscriptionSpool.RejectedChunkException("HTTP 400");
+                }
+                if (pcm[0] == unavailableChunk || attempt <= failuresPerChunk) {
+                    throw new IOException("HTTP 503");
+                }
+                return "chunk " + pcm[0];
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "spool");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (TranscriptionSpool spool : opened) {
+            spool.close();
+        }
+    }
+
+    private TranscriptionSpool open(FakeBackend backend, int concurrency, int maxAttempts) throws IOException {
+        TranscriptionSpool spool = new TranscriptionSpool(directory, CHUNK_BYTES, backend,
+                (sequence, text) -> transcript.add(text), concurrency, maxAttempts, 0);
+        opened.add(spool);
+        return spool;
+    }
+
+    /** Appends one chunk's worth of audio whose first byte identifies it. */
+    private static void appendChunk(TranscriptionSpool spool, int id) throws IOException {
+        byte[] pcm = new byte[CHUNK_BYTES];
+        Arrays.fill(pcm, (byte) id);
+        spool.append(pcm, 0, pcm.length);
+    }
+
+    private int chunkFiles() {
+        return directory.list((dir, name) -> name.endsWith(".pcm")).length;
+    }
+
+    @Test
+    public void sealsFixedSizeChunksOnDisk() throws Exception {
+        TranscriptionSpool spool = open(new FakeBackend(), 2, 1);
+
+        spool.append(new byte[CHUNK_BYTES * 2 + 4], 0, CHUNK_BYTES * 2 + 4);
+        assertEquals(2, chunkFiles());
+        assertEquals(2, spool.getStats().queueDepth);
+
+        spool.flush();
+        assertEquals(3, chunkFiles());
+        File last = new File(directory, "0000000002.pcm");
+        assertEquals(4, last.length());
+    }
+
+    @Test
+    public void drainsInParallelAndDeliversInOrder() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        TranscriptionSpool spool = open(backend, 3, 1);
+        for (int id = 0; id < 6; id++) {
+            appendChunk(spool, id);
+        }
+
+        assertEquals(6, spool.drain());
+
+        assertEquals(Arrays.asList("chunk 0", "chunk 1", "chunk 2", "chunk 3", "chunk 4", "chunk 5"), transcript);
+        assertTrue("no parallelism: " + backend.maxActive, backend.maxActive.get() > 1);
+        assertTrue("concurrency bound exceeded: " + backend.maxActive, backend.maxActive.get() <= 3);
+
+        TranscriptionSpool.Stats stats = spool.getStats();
+        assertEquals(0, stats.queueDepth);
+        assertEquals(6, stats.uploaded);
+        assertTrue(stats.drainRatePerSecond > 0);
+        assertEquals(0, chunkFiles());
+    }
+
+    @Test
+    public void retriesWithTheSameIdempotencyKey() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        backend.failuresPerChunk = 2;
+        TranscriptionSpool spool = open(backend, 2, 3);
+        appendChunk(spool, 0);
+        appendChunk(spool, 1);
+
+        assertEquals(2, spool.drain());
+
+        assertEquals(Arrays.asList("chunk 0", "chunk 1"), transcript);
+        assertEquals(2, backend.attemptsByKey.size());
+        for (int attempts : backend.attemptsByKey.values()) {
+            assertEquals(3, attempts);
+        }
+        assertEquals(4, spool.getStats().retries);
+    }
+
+    @Test
+    public void failedChunkHoldsBackLaterTranscriptsUntilNextDrain() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        backend.unavailableChunk = 1;
+        TranscriptionSpool spool = open(backend, 2, 2);
+        for (int id = 0; id < 3; id++) {
+            appendChunk(spool, id);
+        }
+
+        assertEquals(2, spool.drain());
+        assertEquals(Arrays.asList("chunk 0"), transcript);
+        assertEquals(1, spool.getStats().queueDepth);
+        assertEquals(1, spool.getStats().failed);
+
+        backend.unavailableChunk = -1;
+        assertEquals(1, spool.drain());
+        assertEquals(Arrays.asList("chunk 0", "chunk 1", "chunk 2"), transcript);
+    }
+
+    @Test
+    public void rejectedChunkIsSkippedWithoutBlockingOthers() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        backend.rejectedChunk = 0;
+        TranscriptionSpool spool = open(backend, 2, 3);
+        appendChunk(spool, 0);
+        appendChunk(spool, 1);
+
+        assertEquals(1, spool.drain());
+
+        assertEquals(Arrays.asList("", "chunk 1"), transcript);
+        assertEquals(1, spool.getStats().rejected);
+        assertEquals(1, spool.getStats().uploaded);
+        assertEquals(0, spool.getStats().queueDepth);
+        assertEquals(1, (int) backend.attemptsByKey.values().iterator().next());
+    }
+
+    @Test
+    public void queuedAudioSurvivesRestartWithStableKeys() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        TranscriptionSpool first = open(backend, 1, 1);
+        appendChunk(first, 0);
+        first.close();
+
+        // Audio appended just before the process was killed, never sealed
+        Files.write(new File(directory, "current.part").toPath(), new byte[] {1, 1, 1, 1});
+
+        TranscriptionSpool second = open(backend, 1, 1);
+        assertEquals(2, second.getStats().queueDepth);
+        assertEquals(2, second.drain());
+        assertEquals(Arrays.asList("chunk 0", "chunk 1"), transcript);
+
+        String spoolId = new String(Files.readAllBytes(new File(directory, "spool.id").toPath())).trim();
+        assertTrue(backend.attemptsByKey.containsKey(TranscriptionSpool.idempotencyKey(spoolId, 0)));
+        assertTrue(backend.attemptsByKey.containsKey(TranscriptionSpool.idempotencyKey(spoolId, 1)));
+    }
+
+    @Test
+    public void drainedSpoolNeverReusesKeysAfterRestart() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        TranscriptionSpool first = open(backend, 1, 1);
+        appendChunk(first, 0);
+        appendChunk(first, 1);
+        assertEquals(2, first.drain());
+        first.close();
+
+        TranscriptionSpool second = open(backend, 1, 1);
+        appendChunk(second, 2);
+        assertEquals(1, second.drain());
+
+        // A reused key would be answered from the server's replay cache with old text
+        assertEquals(3, backend.attemptsByKey.size());
+        assertEquals(Arrays.asList("chunk 0", "chunk 1", "chunk 2"), transcript);
+    }
+
+    @Test
+    public void recoveredAudioKeepsItsBacklogLatency() throws Exception {
+        // Captured offline a minute ago, then the app was killed before sealing
+        File part = new File(directory, "current.part");
+        directory.mkdirs();
+        Files.write(part.toPath(), new byte[] {3, 3, 3, 3});
+        part.setLastModified(System.currentTimeMillis() - 60000);
+
+        TranscriptionSpool spool = open(new FakeBackend(), 1, 1);
+        assertEquals(1, spool.drain());
+
+        TranscriptionSpool.Stats stats = spool.getStats();
+        assertTrue("backlog latency reset by recovery: " + stats, stats.maxBacklogLatencyMs >= 60000);
+    }
+
+    @Test
+    public void reportsBacklogLatency() throws Exception {
+        TranscriptionSpool spool = open(new FakeBackend(), 1, 1);
+        appendChunk(spool, 4);
+        Thread.sleep(50);
+
+        spool.drain();
+
+        TranscriptionSpool.Stats stats = spool.getStats();
+        assertTrue("backlog latency too small: " + stats, stats.maxBacklogLatencyMs >= 40);
+        assertTrue(stats.averageBacklogLatencyMs <= stats.maxBacklogLatencyMs);
+    }
+}
@@ -18,9 +18,31 @@ const upload = multer({
   },
 });
 
+// Replay cache for Idempotency-Key: retried offline-spool uploads get the
+// same transcript instead of being transcribed twice
+const IDEMPOTENCY_CACHE_SIZE = 1000;
+const idempotentResponses = new Map();
+
+// Set MOCK_FAILURE_RATE (0..1) to make uploads fail with 503 and exercise retries
+const MOCK_FAILURE_RATE = parseFloat(process.env.MOCK_FAILURE_RATE || '0');
+
 // Mock speech-to-text endpoint (without Google Cloud)
 app.post('/speech-to-text', upload.single('audio'), async (req, res) => {
   try {
+    const idempotencyKey = req.get('Idempotency-Key');
+    if (idempotencyKey && idempotentResponses.has(idempotencyKey)) {
+      console.log(`♻️ Replaying response for idempotency key ${idempotencyKey}`);
+      return res.json(idempotentResponses.get(idempotencyKey));
+    }
+
+    if (Math.random() < MOCK_FAILURE_RATE) {
+      console.log('💥 Injected mock failure');
+      return res.status(503).json({
+        success: false,
+        error: 'Injected mock failure',
+      });
+    }
+
     if (!req.file) {
       return res.status(400).json({
         error: 'No audio file provided',
@@ -55,14 +77,24 @@ app.post('/speech-to-text', upload.single('audio'), async (req, res) => {
 
     console.log(`✅ Mock transcription: "${randomResponse}"`);
 
-    res.json({
+    const response = {
       success: true,
       transcript: randomResponse,
       confidence: 0.95,
       languageCode: languageCode,
       timestamp: new Date().toISOString(),
       mock: true, // Indicate this is a mock response
-    });
+    };
+
+    if (idempotencyKey) {
+      if (idempotentResponses.size >= IDEMPOTENCY_CACHE_SIZE) {
+        // Maps iterate in insertion order, so this drops the oldest key
+        idempotentResponses.delete(idempotentResponses.keys().next().value);
+      }
+      idempotentResponses.set(idempotencyKey, response);
+    }
+
+    res.json(response);
   } catch (error) {
     console.error('Mock speech recognition error:', error);
 
@@ -39,9 +39,20 @@ app.get('/health', (req, res) => {
   });
 });
 
+// Replay cache for Idempotency-Key: retried offline-spool uploads get the
+// same transcript instead of being transcribed (and billed) twice
+const IDEMPOTENCY_CACHE_SIZE = 1000;
+const idempotentResponses = new Map();
+
 // Speech-to-text endpoint
 app.post('/speech-to-text', upload.single('audio'), async (req, res) => {
   try {
+    const idempotencyKey = req.get('Idempotency-Key');
+    if (idempotencyKey && idempotentResponses.has(idempotencyKey)) {
+      console.log(`Replaying response for idempotency key ${idempotencyKey}`);
+      return res.json(idempotentResponses.get(idempotencyKey));
+    }
+
     if (!req.file) {
       return res.status(400).json({
         error: 'No audio file provided',
@@ -90,13 +101,23 @@ app.post('/speech-to-text', upload.single('audio'), async (req, res) => {
     console.log(`Transcription successful: "${transcription}"`);
     console.log(`Confidence: ${confidence}`);
 
-    res.json({
+    const result = {
       success: true,
       transcript: transcription,
       confidence: confidence,
       languageCode: languageCode,
       timestamp: new Date().toISOString(),
-    });
+    };
+
+    if (idempotencyKey) {
+      if (idempotentResponses.size >= IDEMPOTENCY_CACHE_SIZE) {
+        // Maps iterate in insertion order, so this drops the oldest key
+        idempotentResponses.delete(idempotentResponses.keys().next().value);
+      }
+      idempotentResponses.set(idempotencyKey, result);
+    }
+
+    res.json(result);
   } catch (error) {
     console.error('Speech recognition error:', error);
 
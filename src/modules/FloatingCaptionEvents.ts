@@ -0,0 +1,37 @@
+import { NativeEventEmitter, NativeModules } from 'react-native';
+import type { SpoolTranscriptEvent } from './FloatingCaptionModule';
+
+export const SPOOL_TRANSCRIPT_EVENT = 'onSpoolTranscript';
+
+// Joins spooled transcripts in capture order, skipping chunks with no speech
+export const mergeSpoolTranscripts = (segments: Map<number, string>): string =>
+  [...segments.entries()]
+    .sort(([a], [b]) => a - b)
+    .map(([, transcript]) => transcript.trim())
+    .filter(transcript => transcript.length > 0)
+    .join(' ');
+
+/**
+ * Calls onTranscript with the merged text of all offline audio transcribed so
+ * far. Segments are keyed by sequence, so a transcript delivered again after
+ * the app was killed mid-delivery is not duplicated. Returns an unsubscribe
+ * function.
+ */
+export const subscribeToSpoolTranscripts = (
+  onTranscript: (merged: string) => void,
+): (() => void) => {
+  // The floating caption module is Android-only
+  if (!NativeModules.FloatingCaptionModule) {
+    return () => {};
+  }
+  const emitter = new NativeEventEmitter(NativeModules.FloatingCaptionModule);
+  const segments = new Map<number, string>();
+  const subscription = emitter.addListener(
+    SPOOL_TRANSCRIPT_EVENT,
+    (event: SpoolTranscriptEvent) => {
+      segments.set(event.sequence, event.transcript);
+      onTranscript(mergeSpoolTranscripts(segments));
+    },
+  );
+  return () => subscription.remove();
+};
@@ -1,11 +1,33 @@
 import { NativeModules } from 'react-native';
 
+export interface SpoolStats {
+  queueDepth: number;
+  uploaded: number;
+  retries: number;
+  failed: number;
+  rejected: number;
+  drainRatePerSecond: number;
+  averageBacklogLatencyMs: number;
+  maxBacklogLatencyMs: number;
+}
+
+// Emitted in capture order as 'onSpoolTranscript' once spooled audio is transcribed
+export interface SpoolTranscriptEvent {
+  sequence: number;
+  transcript: string;
+}
+
 interface FloatingCaptionModuleType {
   checkOverlayPermission(): Promise<boolean>;
   requestOverlayPermission(): void;
   startFloatingService(): Promise<boolean>;
   stopFloatingService(): Promise<boolean>;
   updateCaption(text: string): void;
+  // Offline spool: 16 kHz 16-bit mono PCM, base64 encoded
+  startSpool(baseUrl: string, languageCode: string): Promise<boolean>;
+  appendSpoolAudio(base64Pcm: string): void;
+  drainSpool(): Promise<SpoolStats>;
+  getSpoolStats(): Promise<SpoolStats>;
 }
 
 const { FloatingCaptionModule } = NativeModules;
@@ -9,6 +9,8 @@ import {
   ScrollView,
 } from 'react-native';
 import FloatingCaptionModule from '../modules/FloatingCaptionModule';
+import { subscribeToSpoolTranscripts } from '../modules/FloatingCaptionEvents';
+import { BACKEND_CONFIG } from '../config/config';
 import { colors } from '../styles/colors';
 
 interface SettingsPageProps {
@@ -18,11 +20,15 @@ interface SettingsPageProps {
 export const SettingsPage: React.FC<SettingsPageProps> = ({ onBack }) => {
   const [isServiceRunning, setIsServiceRunning] = useState(false);
   const [hasOverlayPermission, setHasOverlayPermission] = useState(false);
+  const [offlineTranscript, setOfflineTranscript] = useState('');
 
   useEffect(() => {
     checkPermission();
   }, []);
 
+  // Captions that were lost to network errors arrive here once they are transcribed
+  useEffect(() => subscribeToSpoolTranscripts(setOfflineTranscript), []);
+
   const checkPermission = async () => {
     try {
       const hasPermission = await FloatingCaptionModule.checkOverlayPermission();
@@ -67,6 +73,12 @@ export const SettingsPage: React.FC<SettingsPageProps> = ({ onBack }) => {
       } else {
         await FloatingCaptionModule.startFloatingService();
         setIsServiceRunning(true);
+        try {
+          // Queues caption audio while offline and uploads it when the network returns
+          await FloatingCaptionModule.startSpool(BACKEND_CONFIG.BASE_URL, 'en-US');
+        } catch (error) {
+          console.error('Error starting offline spool:', error);
+        }
         Alert.alert(
           'Success',
           'Floating caption button is now visible. Tap it to start captions.\n\nYou can minimize the app and the button will stay on screen.'
@@ -140,6 +152,16 @@ export const SettingsPage: React.FC<SettingsPageProps> = ({ onBack }) => {
           </View>
         </View>
 
+        {offlineTranscript.length > 0 && (
+          <View style={styles.section}>
+            <Text style={styles.sectionTitle}>Recovered Offline Captions</Text>
+            <Text style={styles.hint}>
+              Transcribed after the network came back, in the order they were heard
+            </Text>
+            <Text style={styles.offlineTranscript}>{offlineTranscript}</Text>
+          </View>
+        )}
+
         <View style={styles.infoSection}>
           <Text style={styles.infoTitle}>ℹ️ How it works</Text>
           <Text style={styles.infoText}>
@@ -286,6 +308,12 @@ const styles = StyleSheet.create({
     color: colors.light.subtext,
     lineHeight: 18,
   },
+  offlineTranscript: {
+    fontSize: 16,
+    color: colors.light.text,
+    lineHeight: 24,
+    marginTop: 12,
+  },
   infoSection: {
     backgroundColor: colors.primary.light,
     padding: 20,